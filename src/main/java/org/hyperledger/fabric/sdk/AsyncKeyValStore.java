@@ -0,0 +1,236 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A write-behind key value store that saves values to another store in the background.
+ * Writes return immediately and are grouped into batches, in which the latest value set for a name wins.
+ * A batch is written with a single {@link KeyValStore#setValues(Map)} call once it reaches the maximum
+ * batch size or the maximum delay, so that a store forcing each write to disk, such as a
+ * {@link LogKeyValStore} in sync mode, forces once per batch.
+ * Values not written yet are returned by {@link #getValue(String)}.
+ * A batch that could not be written fails the futures of its values, and is kept to be retried with
+ * the next batch or flush, unless newer values were set for its names since.
+ * This implements the KeyValStore interface.
+ */
+public class AsyncKeyValStore implements KeyValStore, Closeable {
+    private static final Log logger = LogFactory.getLog(AsyncKeyValStore.class);
+
+    // Default maximum number of names in a batch
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    // Default maximum delay, in milliseconds, before a value is written
+    public static final long DEFAULT_MAX_DELAY = 10;
+
+    private final KeyValStore store;
+    private final int maxBatchSize;
+    private final long maxDelay;
+    private final ScheduledExecutorService writer;
+
+    // Guarded by this
+    private Map<String, String> pending = new HashMap<>();
+    private CompletableFuture<Void> pendingCommit = new CompletableFuture<>();
+    private Map<String, String> committing = Collections.emptyMap();
+    private CompletableFuture<Void> lastCommit = CompletableFuture.completedFuture(null);
+    private boolean scheduled;
+    private boolean draining;
+
+    public AsyncKeyValStore(KeyValStore store) {
+        this(store, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * @param store the store the values are written to
+     * @param maxBatchSize the number of names pending after which a batch is written without delay
+     * @param maxDelay the maximum delay, in milliseconds, before a value is written
+     */
+    public AsyncKeyValStore(KeyValStore store, int maxBatchSize, long maxDelay) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.store = store;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "keyvalstore-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the value associated with name, including a value not written yet.
+     * @param name
+     * @return value associated with the name
+     */
+    public String getValue(String name) {
+        synchronized (this) {
+            if (pending.containsKey(name)) {
+                return pending.get(name);
+            }
+            if (committing.containsKey(name)) {
+                return committing.get(name);
+            }
+        }
+        return store.getValue(name);
+    }
+
+    /**
+     * Set the value associated with name, without waiting for it to be written.
+     * @param name
+     * @param value
+     */
+    public void setValue(String name, String value) {
+        setValuesAsync(Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Set several values, without waiting for them to be written.
+     * @param values the values to set, by name
+     */
+    @Override
+    public void setValues(Map<String, String> values) {
+        setValuesAsync(values);
+    }
+
+    /**
+     * Set the value associated with name.
+     * @param name
+     * @param value
+     * @return a future completed once the value is written
+     */
+    public CompletableFuture<Void> setValueAsync(String name, String value) {
+        return setValuesAsync(Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Set several values.
+     * @param values the values to set, by name
+     * @return a future completed once the values are written
+     */
+    public synchronized CompletableFuture<Void> setValuesAsync(Map<String, String> values) {
+        pending.putAll(values);
+        if (pending.size() >= maxBatchSize) {
+            drain();
+        } else if (!scheduled) {
+            scheduled = true;
+            writer.schedule(() -> commit(true), maxDelay, TimeUnit.MILLISECONDS);
+        }
+        return pendingCommit;
+    }
+
+    /**
+     * Start writing the pending values without waiting for the maximum delay.
+     * @return a future completed once all the values set before this call are written
+     */
+    public synchronized CompletableFuture<Void> flushAsync() {
+        if (pending.isEmpty()) {
+            return lastCommit;
+        }
+        drain();
+        return pendingCommit;
+    }
+
+    // Guarded by this. Writes arriving while a batch is written are all taken by the next one.
+    private void drain() {
+        if (!draining) {
+            draining = true;
+            writer.execute(() -> commit(false));
+        }
+    }
+
+    /**
+     * Wait until all the values set before this call are written.
+     */
+    public void flush() {
+        try {
+            flushAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Write the pending values, then close the underlying store if it is closeable.
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.shutdown();
+            if (store instanceof Closeable) {
+                ((Closeable) store).close();
+            }
+        }
+    }
+
+    // Only called from the writer thread, so batches are written in order
+    private void commit(boolean delayed) {
+        Map<String, String> batch;
+        CompletableFuture<Void> commit;
+        synchronized (this) {
+            if (delayed) {
+                scheduled = false;
+            } else {
+                draining = false;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            commit = pendingCommit;
+            pending = new HashMap<>();
+            pendingCommit = new CompletableFuture<>();
+            committing = batch;
+            lastCommit = commit;
+        }
+
+        try {
+            store.setValues(batch);
+            commit.complete(null);
+        } catch (RuntimeException e) {
+            logger.warn(String.format("Could not save %d values to the keyvalue store, reason:%s",
+                    batch.size(), e.getMessage()));
+            synchronized (this) {
+                for (Map.Entry<String, String> entry : batch.entrySet()) {
+                    if (!pending.containsKey(entry.getKey())) {
+                        pending.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            commit.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                committing = Collections.emptyMap();
+            }
+        }
+    }
+}
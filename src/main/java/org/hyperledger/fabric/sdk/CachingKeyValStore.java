@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A key value store that caches the values of another store, for instance one backed by a remote database.
+ * The cache is bounded in size and its entries expire after a time to live, so that changes made to the
+ * underlying store by other processes are eventually seen.
+ * Names without value can be cached too, so that looking up unknown members does not reach the store each time.
+ * This implements the KeyValStore interface.
+ */
+public class CachingKeyValStore implements KeyValStore {
+
+    /**
+     * What happens to the cached value of a name when a new value is set.
+     */
+    public enum WritePolicy {
+        /** The new value is cached. */
+        WRITE_THROUGH,
+        /** The cached value is dropped, and the new value is read from the store on the next lookup. */
+        WRITE_INVALIDATE
+    }
+
+    // Default maximum number of cached names
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    // Default time to live of cached values, in seconds
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toSeconds(5);
+
+    private final KeyValStore store;
+    private final Cache<String, Optional<String>> cache;
+    private volatile boolean negativeCaching = true;
+    private volatile WritePolicy writePolicy = WritePolicy.WRITE_THROUGH;
+
+    public CachingKeyValStore(KeyValStore store) {
+        this(store, DEFAULT_MAXIMUM_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param store the store whose values are cached
+     * @param maximumSize the maximum number of cached names
+     * @param timeToLive the time, in seconds, after which a cached value is read again from the store
+     */
+    public CachingKeyValStore(KeyValStore store, long maximumSize, long timeToLive) {
+        this.store = store;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get the value associated with name, from the cache if present.
+     * @param name
+     * @return value associated with the name
+     */
+    public String getValue(String name) {
+        Optional<String> value;
+        try {
+            value = cache.get(name, () -> Optional.ofNullable(store.getValue(name)));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        if (!value.isPresent() && !negativeCaching) {
+            cache.invalidate(name);
+        }
+        return value.orElse(null);
+    }
+
+    /**
+     * Set the value associated with name in the underlying store.
+     * @param name
+     * @param value
+     */
+    public void setValue(String name, String value) {
+        store.setValue(name, value);
+        update(name, value);
+    }
+
+    /**
+     * Set several values in the underlying store.
+     * @param values the values to set, by name
+     */
+    @Override
+    public void setValues(Map<String, String> values) {
+        store.setValues(values);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            update(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Drop the cached value of name, e.g. after it was changed in the underlying store by another process.
+     * @param name
+     */
+    public void invalidate(String name) {
+        cache.invalidate(name);
+    }
+
+    /**
+     * Drop all the cached values.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Whether names without value are cached.
+     */
+    public boolean isNegativeCaching() {
+        return negativeCaching;
+    }
+
+    /**
+     * Set whether names without value are cached.
+     * @param negativeCaching true to cache names without value
+     */
+    public void setNegativeCaching(boolean negativeCaching) {
+        this.negativeCaching = negativeCaching;
+    }
+
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    public void setWritePolicy(WritePolicy writePolicy) {
+        this.writePolicy = writePolicy;
+    }
+
+    /**
+     * Get the statistics of the cache, such as its hit rate.
+     * @return cache statistics
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private void update(String name, String value) {
+        if (writePolicy == WritePolicy.WRITE_THROUGH && (value != null || negativeCaching)) {
+            cache.put(name, Optional.ofNullable(value));
+        } else {
+            cache.invalidate(name);
+        }
+    }
+}
@@ -25,10 +25,26 @@ import org.hyperledger.fabric.sdk.exception.RegistrationException;
 import org.hyperledger.fabric.sdk.transaction.Transaction;
 import org.hyperledger.protos.Fabric.Response;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The class representing a chain with which the client SDK interacts.
@@ -45,9 +61,17 @@ public class Chain {
     // Security enabled flag
     private boolean securityEnabled = true;
 
-    // A member cache associated with this chain
-    // TODO: Make an LRU to limit size of member cache
-    private Map<String, Member> members = new HashMap<>();
+    // Default bounds of the member cache
+    private static final long DEFAULT_MEMBER_CACHE_SIZE = 10000;
+    private static final long DEFAULT_MEMBER_CACHE_IDLE_TIME = TimeUnit.MINUTES.toSeconds(30);
+
+    // Default maximum number of member services requests in flight for bulk operations
+    public static final int DEFAULT_BULK_PARALLELISM = 16;
+
+    // A member cache associated with this chain, bounded by size and idle time
+    private long memberCacheSize = DEFAULT_MEMBER_CACHE_SIZE;
+    private long memberCacheIdleTime = DEFAULT_MEMBER_CACHE_IDLE_TIME;
+    private volatile LoadingCache<String, Member> members = newMemberCache();
 
     // The number of tcerts to get in each batch
     private int tcertBatchSize = 200;
@@ -77,6 +101,12 @@ public class Chain {
 
     private EventHub eventHub;
 
+    // The executor on which tcert batches are fetched in the background
+    private ExecutorService tcertExecutor;
+
+    // The directory of the caches used to speed up repeated deploys (directory hashes and packages), if any
+    private String deployCacheDirectory;
+
     public Chain(String name) {
         this.name = name;
         this.eventHub = new EventHub();
@@ -243,6 +273,23 @@ public class Chain {
         this.keyValStore = keyValStore;
     }
 
+    /**
+     * Get the directory where the caches used to speed up repeated deploys are kept.
+     * @return the deploy cache directory, or null if the caches are kept in memory only
+     */
+    public String getDeployCacheDirectory() {
+        return this.deployCacheDirectory;
+    }
+
+    /**
+     * Set the directory where the caches used to speed up repeated deploys are kept,
+     * so that they survive a restart.
+     * @param deployCacheDirectory the deploy cache directory, or null to keep the caches in memory only
+     */
+    public void setDeployCacheDirectory(String deployCacheDirectory) {
+        this.deployCacheDirectory = deployCacheDirectory;
+    }
+
     /**
      * Get the tcert batch size.
      * @return
@@ -259,6 +306,31 @@ public class Chain {
         this.tcertBatchSize = batchSize;
     }
 
+    /**
+     * Get the executor used to fetch tcert batches in the background.
+     * Unless one was set, a pool of daemon threads is created on first use.
+     * @return the tcert executor
+     */
+    public synchronized ExecutorService getTCertExecutor() {
+        if (this.tcertExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.tcertExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "tcert-getter-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.tcertExecutor;
+    }
+
+    /**
+     * Set the executor used to fetch tcert batches in the background.
+     * @param tcertExecutor tcert executor
+     */
+    public synchronized void setTCertExecutor(ExecutorService tcertExecutor) {
+        this.tcertExecutor = tcertExecutor;
+    }
+
     public CryptoPrimitives getCryptoPrimitives() {
         return this.cryptoPrimitives;
     }
@@ -293,15 +365,93 @@ public class Chain {
         if (null == keyValStore) throw new RuntimeException("No key value store was found.  You must first call Chain.setKeyValStore");
         if (null == memberServices) throw new RuntimeException("No member services was found.  You must first call Chain.setMemberServices or Chain.setMemberServicesUrl");
 
-        // Try to get the member state from the cache
-        Member member = (Member) members.get(name);
-        if (null != member) return member;
+        // Get the member from the cache, loading it on a miss
+        try {
+            return members.getUnchecked(name);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-        // Create the member and try to restore it's state from the key value store (if found).
-        member = new Member(name, this);
-        member.restoreState();
-        return member;
+    /**
+     * Get the maximum number of members kept in the member cache.
+     * @return the member cache size
+     */
+    public long getMemberCacheSize() {
+        return this.memberCacheSize;
+    }
+
+    /**
+     * Set the maximum number of members kept in the member cache.
+     * The least recently used members are evicted first, after their state and unused tcerts are saved.
+     * @param memberCacheSize the member cache size
+     */
+    public synchronized void setMemberCacheSize(long memberCacheSize) {
+        this.memberCacheSize = memberCacheSize;
+        rebuildMemberCache();
+    }
 
+    /**
+     * Get the time in seconds after which a member that has not been used is evicted from the member cache.
+     * @return the member cache idle time
+     */
+    public long getMemberCacheIdleTime() {
+        return this.memberCacheIdleTime;
+    }
+
+    /**
+     * Set the time in seconds after which a member that has not been used is evicted from the member cache.
+     * @param memberCacheIdleTime the member cache idle time
+     */
+    public synchronized void setMemberCacheIdleTime(long memberCacheIdleTime) {
+        this.memberCacheIdleTime = memberCacheIdleTime;
+        rebuildMemberCache();
+    }
+
+    /**
+     * Get the hit, miss, load and eviction statistics of the member cache.
+     * @return the member cache statistics
+     */
+    public CacheStats getMemberCacheStats() {
+        return this.members.stats();
+    }
+
+    private LoadingCache<String, Member> newMemberCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(memberCacheSize)
+                .expireAfterAccess(memberCacheIdleTime, TimeUnit.SECONDS)
+                .recordStats()
+                .removalListener((RemovalNotification<String, Member> notification) -> {
+                    if (notification.wasEvicted()) {
+                        // Keep the state and unused tcerts of the evicted member for the next time it is loaded
+                        logger.debug(String.format("Evicting member %s from the member cache", notification.getKey()));
+                        try {
+                            notification.getValue().saveState();
+                            notification.getValue().saveTCerts();
+                        } catch (RuntimeException e) {
+                            logger.warn(String.format("Could not save evicted member %s, reason:%s",
+                                    notification.getKey(), e.getMessage()));
+                        }
+                    }
+                })
+                .build(new CacheLoader<String, Member>() {
+                    @Override
+                    public Member load(String name) {
+                        // Create the member and try to restore it's state from the key value store (if found).
+                        Member member = new Member(name, Chain.this);
+                        member.restoreState();
+                        return member;
+                    }
+                });
+    }
+
+    private void rebuildMemberCache() {
+        LoadingCache<String, Member> cache = newMemberCache();
+        cache.putAll(this.members.asMap());
+        this.members = cache;
     }
 
     /**
@@ -356,6 +506,91 @@ public class Chain {
         return member;
     }
 
+    /**
+     * Register and enroll several users or other member types, with at most
+     * {@link #DEFAULT_BULK_PARALLELISM} requests to member services in flight.
+     * @see #registerAndEnrollAll(Collection, int)
+     */
+    public List<Member> registerAndEnrollAll(Collection<RegistrationRequest> registrationRequests) throws RegistrationException, EnrollmentException {
+        return registerAndEnrollAll(registrationRequests, DEFAULT_BULK_PARALLELISM);
+    }
+
+    /**
+     * Register and enroll several users or other member types in parallel.
+     * This assumes that a registrar with sufficient privileges has been set.
+     * The state of all the members is saved to the key value store in a single write once all requests
+     * are done, including the members that were registered but could not be enrolled.
+     * @param registrationRequests Registration information of each member.
+     * @param parallelism The maximum number of requests to member services in flight.
+     * @return the members, in the order of the registration requests
+     * @throws RegistrationException if a registration fails
+     * @throws EnrollmentException if an enrollment fails
+     */
+    public List<Member> registerAndEnrollAll(Collection<RegistrationRequest> registrationRequests, int parallelism) throws RegistrationException, EnrollmentException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "register-enroll-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Member> members = new ArrayList<>(registrationRequests.size());
+        List<CompletableFuture<Member>> futures = new ArrayList<>(registrationRequests.size());
+        try {
+            for (RegistrationRequest registrationRequest : registrationRequests) {
+                Member member = getMember(registrationRequest.getEnrollmentID());
+                members.add(member);
+                futures.add(member.registerAndEnrollAsync(registrationRequest, executor));
+            }
+
+            Throwable failure = null;
+            for (CompletableFuture<Member> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+
+            // Save the state of every registered member, even if it could not be enrolled
+            Map<String, String> states = new HashMap<>();
+            for (Member member : members) {
+                if (member.isRegistered()) {
+                    states.put(member.getKeyValStoreName(), member.serializeState());
+                }
+            }
+            keyValStore.setValues(states);
+
+            if (failure instanceof RegistrationException) {
+                throw (RegistrationException) failure;
+            } else if (failure instanceof EnrollmentException) {
+                throw (EnrollmentException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+            return members;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Save the unused transaction certificates of the cached members to the key value store.
+     * Call this before shutting down so that the next run can use them.
+     */
+    public void saveTCerts() {
+        for (Member member : members.asMap().values()) {
+            member.saveTCerts();
+        }
+    }
+
     /**
      * Send a transaction to a peer.
      * @param tx The transaction
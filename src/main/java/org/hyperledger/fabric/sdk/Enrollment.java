@@ -15,6 +15,8 @@
 package org.hyperledger.fabric.sdk;
 
 import java.io.Serializable;
+import java.security.PrivateKey;
+import java.security.PublicKey;
 
 // Enrollment metadata
 public class Enrollment implements Serializable {
@@ -24,12 +26,35 @@ public class Enrollment implements Serializable {
     private String chainKey;
     private String queryStateKey;
 
+    // Decoded form of key, cached so it is not decoded again for every signature or TCert
+    private transient volatile PrivateKey privateKey;
+
+    // Parsed form of chainKey, cached so it is not re-parsed on every confidential transaction
+    private transient volatile PublicKey chainPublicKey;
+
     public String getKey() {
         return key;
     }
 
     public void setKey(String key) {
         this.key = key;
+        this.privateKey = null;
+    }
+
+    /**
+     * Get the decoded enrollment private key, if it has been cached.
+     * @return the enrollment private key, or null if it has not been decoded yet
+     */
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    /**
+     * Cache the decoded form of the enrollment key.
+     * @param privateKey the private key decoded from {@link #getKey()}
+     */
+    public void setPrivateKey(PrivateKey privateKey) {
+        this.privateKey = privateKey;
     }
 
     public String getCert() {
@@ -46,6 +71,23 @@ public class Enrollment implements Serializable {
 
     public void setChainKey(String chainKey) {
         this.chainKey = chainKey;
+        this.chainPublicKey = null;
+    }
+
+    /**
+     * Get the parsed chain key, if it has been cached.
+     * @return the chain public key, or null if it has not been parsed yet
+     */
+    public PublicKey getChainPublicKey() {
+        return chainPublicKey;
+    }
+
+    /**
+     * Cache the parsed form of the chain key.
+     * @param chainPublicKey the public key parsed from {@link #getChainKey()}
+     */
+    public void setChainPublicKey(PublicKey chainPublicKey) {
+        this.chainPublicKey = chainPublicKey;
     }
 
     public String getQueryStateKey() {
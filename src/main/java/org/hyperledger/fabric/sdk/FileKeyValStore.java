@@ -20,6 +20,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
@@ -69,11 +71,20 @@ public class FileKeyValStore implements KeyValStore {
      * @param value
      */
     public void setValue(String name, String value) {
+    	setValues(Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Set several values, reading and writing the file only once.
+     * @param values the values to set, by name
+     */
+    @Override
+    public synchronized void setValues(Map<String, String> values) {
     	Properties properties = loadProperties();
     	try (
     	    	OutputStream output = new FileOutputStream(file);
         	) {
-    	    	properties.setProperty(name, value);
+    	    	properties.putAll(values);
     	    	properties.store(output, "");
     	    	output.close();
 
@@ -14,6 +14,8 @@
 
 package org.hyperledger.fabric.sdk;
 
+import java.util.Map;
+
 /**
  * The KeyValStore interface used for persistent storage.
  */
@@ -32,4 +34,15 @@ public interface KeyValStore {
      */
     void setValue(String name, String value);
 
+    /**
+     * Set several values at once.
+     * Implementations should override this when they can write several values at a lower cost.
+     * @param values the values to set, by name
+     */
+    default void setValues(Map<String, String> values) {
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            setValue(entry.getKey(), entry.getValue());
+        }
+    }
+
 }
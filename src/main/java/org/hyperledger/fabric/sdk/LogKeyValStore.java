@@ -0,0 +1,437 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A local log-structured key value store.
+ * All values are kept in memory, so reads do not touch the disk, and each write is a single
+ * sequential append of CRC-protected records to a log file.
+ * Once the log grows larger than the last checkpoint, it is compacted in the background into a
+ * new checkpoint, which atomically replaces the previous one.
+ * On start up the store is recovered from the checkpoint and the logs written after it; a record
+ * torn by a crash at the end of the log is discarded.
+ * A write that fails is removed from the log and its error thrown; if it cannot be removed, the store
+ * refuses all further writes, so that later records are never appended after a partial one.
+ * This implements the KeyValStore interface.
+ */
+public class LogKeyValStore implements KeyValStore, Closeable {
+    private static final Log logger = LogFactory.getLog(LogKeyValStore.class);
+
+    // Minimum size of the log before it is compacted
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 4 * 1024 * 1024;
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String CHECKPOINT_TMP_FILE = "checkpoint.tmp";
+    private static final String LOG_FILE_PREFIX = "log.";
+    private static final int CHECKPOINT_VERSION = 1;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final Map<String, String> index = new ConcurrentHashMap<>();
+    private final Object compactionLock = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    // Guarded by this
+    private FileChannel log;
+    private long generation;
+    private long logSize;
+    private long checkpointSize;
+    private IOException failure;
+    private boolean closed;
+
+    private volatile boolean sync = false;
+    private volatile long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+    /**
+     * Open the store kept in the given directory, creating it if needed.
+     * @param directory the directory of the checkpoint and log files
+     */
+    public LogKeyValStore(String directory) {
+        this.directory = Paths.get(directory);
+        try {
+            Files.createDirectories(this.directory);
+            recover();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not open keyvalue store in directory \"%s\"", directory), e);
+        }
+    }
+
+    /**
+     * Get the value associated with name.
+     * @param name
+     * @return value associated with the name
+     */
+    public String getValue(String name) {
+        return index.get(name);
+    }
+
+    /**
+     * Set the value associated with name. A null value removes the name.
+     * @param name
+     * @param value
+     */
+    public void setValue(String name, String value) {
+        setValues(Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Set several values with a single append to the log.
+     * @param values the values to set, by name
+     * @throws RuntimeException if the values could not be written, in which case none of them is set
+     */
+    @Override
+    public void setValues(Map<String, String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(buffer);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                writeRecord(out, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        boolean compact;
+        synchronized (this) {
+            if (failure != null) {
+                throw new RuntimeException("The keyvalue store failed and is read-only", failure);
+            }
+            try {
+                ByteBuffer records = ByteBuffer.wrap(buffer.toByteArray());
+                while (records.hasRemaining()) {
+                    log.write(records);
+                }
+                if (sync) {
+                    log.force(false);
+                }
+                logSize += buffer.size();
+            } catch (IOException e) {
+                logger.warn(String.format("Could not save the keyvalue store, reason:%s", e.getMessage()));
+                discardPartialWrite(e);
+                throw new RuntimeException("Could not save the keyvalue store", e);
+            }
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (entry.getValue() == null) {
+                    index.remove(entry.getKey());
+                } else {
+                    index.put(entry.getKey(), entry.getValue());
+                }
+            }
+            compact = logSize > Math.max(compactionThreshold, checkpointSize);
+        }
+
+        if (compact && compacting.compareAndSet(false, true)) {
+            Compactor.executor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    logger.warn(String.format("Could not compact the keyvalue store, reason:%s", e.getMessage()));
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Truncate the log back to the end of the last complete write, or fail the store if that is not possible.
+     */
+    private void discardPartialWrite(IOException cause) {
+        try {
+            log.truncate(logSize);
+            log.position(logSize);
+        } catch (IOException e) {
+            logger.warn(String.format("Could not truncate the keyvalue store log, reason:%s", e.getMessage()));
+            cause.addSuppressed(e);
+            failure = cause;
+        }
+    }
+
+    /**
+     * Whether each write is forced to the storage device before returning.
+     */
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Set whether each write is forced to the storage device before returning.
+     * Without it, a crash of the operating system may lose the last writes, but never corrupts the store.
+     * @param sync true to force each write
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Set the minimum size of the log, in bytes, before it is compacted.
+     * @param compactionThreshold the minimum log size
+     */
+    public void setCompactionThreshold(long compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Write all values to a new checkpoint and delete the logs it replaces.
+     * Writes are only blocked while the store switches to a new log.
+     * @throws IOException if the checkpoint could not be written
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            Map<String, String> snapshot;
+            long checkpointGeneration;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                FileChannel newLog = openLog(generation + 1);
+                log.close();
+                log = newLog;
+                generation++;
+                logSize = 0;
+                checkpointGeneration = generation;
+                snapshot = new HashMap<>(index);
+            }
+
+            Path tmp = directory.resolve(CHECKPOINT_TMP_FILE);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.writeInt(CHECKPOINT_VERSION);
+                out.writeLong(checkpointGeneration);
+                for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+                    writeRecord(out, entry.getKey(), entry.getValue());
+                }
+                out.flush();
+                channel.force(true);
+            }
+            long size = Files.size(tmp);
+            Files.move(tmp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+            synchronized (this) {
+                checkpointSize = size;
+            }
+
+            for (long logGeneration : listLogGenerations()) {
+                if (logGeneration < checkpointGeneration) {
+                    Files.deleteIfExists(logPath(logGeneration));
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the current log, after waiting for a running compaction. The store must not be used afterwards.
+     */
+    public void close() throws IOException {
+        synchronized (compactionLock) {
+            synchronized (this) {
+                closed = true;
+                log.close();
+            }
+        }
+    }
+
+    /**
+     * Force the directory entries to the storage device, so that a renamed checkpoint survives a crash
+     * before the logs it replaces are deleted.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on some platforms, which order the rename with the file writes
+            logger.debug(String.format("Could not sync directory \"%s\", reason:%s", directory, e.getMessage()));
+        }
+    }
+
+    private void recover() throws IOException {
+        Files.deleteIfExists(directory.resolve(CHECKPOINT_TMP_FILE));
+
+        long checkpointGeneration = 0;
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+                int version = in.readInt();
+                if (version != CHECKPOINT_VERSION) {
+                    throw new IOException(String.format("Unsupported checkpoint version %d", version));
+                }
+                checkpointGeneration = in.readLong();
+                long length = Files.size(checkpoint);
+                if (readRecords(in) != length - Integer.BYTES - Long.BYTES) {
+                    throw new IOException(String.format("Corrupted checkpoint \"%s\"", checkpoint));
+                }
+                checkpointSize = length;
+            }
+        }
+
+        List<Long> logGenerations = listLogGenerations();
+        generation = checkpointGeneration;
+        long validLength = 0;
+        for (long logGeneration : logGenerations) {
+            if (logGeneration < checkpointGeneration) {
+                // Left over by a compaction interrupted after the checkpoint was written
+                Files.deleteIfExists(logPath(logGeneration));
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath(logGeneration))))) {
+                validLength = readRecords(in);
+            }
+            generation = logGeneration;
+        }
+
+        log = openLog(generation);
+        if (log.size() > validLength) {
+            logger.warn(String.format("Discarding %d bytes torn at the end of log %d",
+                    log.size() - validLength, generation));
+            log.truncate(validLength);
+        }
+        log.position(validLength);
+        logSize = validLength;
+    }
+
+    /**
+     * Apply the records read from the stream to the index, up to the first incomplete or corrupted record.
+     * @return the length of the valid records
+     */
+    private long readRecords(DataInputStream in) throws IOException {
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+        while (true) {
+            int length;
+            int expectedCrc;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                if (length < 0 || length > MAX_RECORD_LENGTH) {
+                    return validLength;
+                }
+                expectedCrc = in.readInt();
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                return validLength;
+            }
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) {
+                return validLength;
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            byte[] name = new byte[record.getInt()];
+            record.get(name);
+            int valueLength = record.getInt();
+            if (valueLength < 0) {
+                index.remove(new String(name, StandardCharsets.UTF_8));
+            } else {
+                byte[] value = new byte[valueLength];
+                record.get(value);
+                index.put(new String(name, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8));
+            }
+            validLength += 2 * Integer.BYTES + length;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, String name, String value) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(2 * Integer.BYTES + nameBytes.length
+                + (valueBytes == null ? 0 : valueBytes.length));
+        payload.putInt(nameBytes.length).put(nameBytes);
+        if (valueBytes == null) {
+            payload.putInt(-1);
+        } else {
+            payload.putInt(valueBytes.length).put(valueBytes);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        out.writeInt(payload.capacity());
+        out.writeInt((int) crc.getValue());
+        out.write(payload.array());
+    }
+
+    private List<Long> listLogGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                try {
+                    generations.add(Long.parseLong(file.getFileName().toString().substring(LOG_FILE_PREFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.debug(String.format("Ignoring file \"%s\"", file));
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private Path logPath(long logGeneration) {
+        return directory.resolve(LOG_FILE_PREFIX + logGeneration);
+    }
+
+    private FileChannel openLog(long logGeneration) throws IOException {
+        return FileChannel.open(logPath(logGeneration), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Lazily started background thread shared by all stores.
+     */
+    private static final class Compactor {
+        static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "keyvalstore-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
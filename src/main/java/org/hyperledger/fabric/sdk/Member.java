@@ -15,15 +15,16 @@
 package org.hyperledger.fabric.sdk;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,6 +36,10 @@ import org.hyperledger.fabric.sdk.exception.NoAvailableTCertException;
 import org.hyperledger.fabric.sdk.exception.NoValidPeerException;
 import org.hyperledger.fabric.sdk.exception.RegistrationException;
 import org.hyperledger.fabric.sdk.transaction.TransactionContext;
+import org.hyperledger.protos.MemberProto.EnrollmentState;
+import org.hyperledger.protos.MemberProto.MemberState;
+
+import com.google.protobuf.InvalidProtocolBufferException;
 
 import io.netty.util.internal.StringUtil;
 
@@ -43,6 +48,9 @@ public class Member implements Serializable {
 
 	private static final Log logger = LogFactory.getLog(Member.class);
 
+	// Prefix of the states saved as a MemberState protobuf, as opposed to the legacy Java serialization
+	private static final String STATE_FORMAT_PREFIX = "pb1:";
+
     private transient Chain chain;
     private String name;
     private ArrayList<String> roles;
@@ -53,7 +61,7 @@ public class Member implements Serializable {
     private transient MemberServices memberServices;
     private transient KeyValStore keyValStore;
     private String keyValStoreName;
-    private Map<String, TCertGetter> tcertGetterMap;
+    private transient Map<String, TCertGetter> tcertGetterMap;
     private int tcertBatchSize;
 
     /**
@@ -73,7 +81,7 @@ public class Member implements Serializable {
         this.keyValStore = chain.getKeyValStore();
         this.keyValStoreName = toKeyValStoreName(this.name);
         this.tcertBatchSize = chain.getTCertBatchSize();
-        this.tcertGetterMap = new HashMap<String, TCertGetter>();
+        this.tcertGetterMap = new ConcurrentHashMap<String, TCertGetter>();
     }
 
     /**
@@ -235,6 +243,34 @@ public class Member implements Serializable {
         enroll(this.enrollmentSecret);
     }
 
+    /**
+     * Perform both registration and enrollment on the given executor.
+     * The state of the member is not saved: the caller is expected to save it once done,
+     * for instance together with the state of other members.
+     * @param registrationRequest the registration request
+     * @param executor the executor on which member services are called
+     * @return a future completed with this member once enrolled
+     */
+    CompletableFuture<Member> registerAndEnrollAsync(RegistrationRequest registrationRequest, Executor executor) {
+        if (!registrationRequest.getEnrollmentID().equals(getName())) {
+            throw new RuntimeException("registration enrollment ID and member name are not equal");
+        }
+
+        return memberServices.registerAsync(registrationRequest, chain.getRegistrar(), executor)
+                .thenCompose(secret -> {
+                    this.enrollmentSecret = secret;
+                    EnrollmentRequest req = new EnrollmentRequest();
+                    req.setEnrollmentID(getName());
+                    req.setEnrollmentSecret(secret);
+                    logger.debug(String.format("Enrolling [req=%s]", req));
+                    return memberServices.enrollAsync(req, executor);
+                })
+                .thenApply(enrollment -> {
+                    this.enrollment = enrollment;
+                    return this;
+                });
+    }
+
     /**
      * Issue a deploy request on behalf of this member
      * @param deployRequest {@link DeployRequest}
@@ -312,17 +348,37 @@ public class Member implements Serializable {
         String key = getAttrsKey(attrs);
 
         logger.debug(String.format("Member.getNextTCert: key=%s", key));
-        TCertGetter tcertGetter = this.tcertGetterMap.get(key);
-        if (tcertGetter == null) {
-            logger.debug(String.format("Member.getNextTCert: key=%s, creating new getter", key));
-            tcertGetter = new TCertGetter(this, attrs, key);
-            this.tcertGetterMap.put(key, tcertGetter);
-        }
+        TCertGetter tcertGetter = this.tcertGetterMap.computeIfAbsent(key, k -> {
+            logger.debug(String.format("Member.getNextTCert: key=%s, creating new getter", k));
+            return new TCertGetter(this, attrs, k);
+        });
         return tcertGetter.getNextTCert();
     }
 
+    /**
+     * Save the unused transaction certificates of this member to the key value store, so that they can
+     * be used after a restart instead of fetching new ones from member services.
+     * The saved tcerts are no longer available to this member object.
+     */
+    public void saveTCerts() {
+        for (TCertGetter tcertGetter : this.tcertGetterMap.values()) {
+            tcertGetter.saveTCerts();
+        }
+    }
+
+    /**
+     * Get the number of transaction certificates with the given attributes that are available
+     * without a request to member services.
+     * @param attrs The names of the attributes of the tcerts.
+     * @return the number of available tcerts
+     */
+    public int getTCertCount(List<String> attrs) {
+        TCertGetter tcertGetter = this.tcertGetterMap.get(getAttrsKey(attrs));
+        return tcertGetter == null ? 0 : tcertGetter.getTCertCount();
+    }
+
    private String getAttrsKey(List<String> attrs ) {
-	    if (attrs == null || attrs.isEmpty()) return null;
+	    if (attrs == null || attrs.isEmpty()) return "";
 	    return String.join(",", attrs);
 	}
 
@@ -331,16 +387,53 @@ public class Member implements Serializable {
     * Save the state of this member to the key value store.
     */
    public void saveState() {
-	  ByteArrayOutputStream bos = new ByteArrayOutputStream();
-	  try {
-		ObjectOutputStream oos = new ObjectOutputStream(bos);
-		oos.writeObject(this);
-		oos.flush();
-		keyValStore.setValue(keyValStoreName, Hex.toHexString(bos.toByteArray()));
-		bos.close();
-	} catch (IOException e) {
-		logger.debug(String.format("Could not save state of member %s", this.name), e);
-	}
+	  keyValStore.setValue(keyValStoreName, serializeState());
+   }
+
+   /**
+    * Serialize the state of this member in the form saved to the key value store:
+    * a {@link MemberState} protobuf, base64 encoded after a version prefix.
+    * @return the serialized state
+    */
+   String serializeState() {
+	  MemberState.Builder state = MemberState.newBuilder().setName(name);
+	  if (roles != null) {
+		  state.addAllRoles(roles);
+	  }
+	  if (account != null) {
+		  state.setAccount(account);
+	  }
+	  if (affiliation != null) {
+		  state.setAffiliation(affiliation);
+	  }
+	  if (enrollmentSecret != null) {
+		  state.setEnrollmentSecret(enrollmentSecret);
+	  }
+	  if (enrollment != null) {
+		  EnrollmentState.Builder enrollmentState = EnrollmentState.newBuilder();
+		  if (enrollment.getKey() != null) {
+			  enrollmentState.setKey(enrollment.getKey());
+		  }
+		  if (enrollment.getCert() != null) {
+			  enrollmentState.setCert(enrollment.getCert());
+		  }
+		  if (enrollment.getChainKey() != null) {
+			  enrollmentState.setChainKey(enrollment.getChainKey());
+		  }
+		  if (enrollment.getQueryStateKey() != null) {
+			  enrollmentState.setQueryStateKey(enrollment.getQueryStateKey());
+		  }
+		  state.setEnrollment(enrollmentState);
+	  }
+	  return STATE_FORMAT_PREFIX + Base64.getEncoder().encodeToString(state.build().toByteArray());
+   }
+
+   /**
+    * Get the name under which the state of this member is saved in the key value store.
+    * @return the key value store name
+    */
+   String getKeyValStoreName() {
+	  return keyValStoreName;
    }
 
    /**
@@ -348,30 +441,67 @@ public class Member implements Serializable {
     */
    public void restoreState() {
 		String memberStr = keyValStore.getValue(keyValStoreName);
-		if (null != memberStr) {
-			// The member was found in the key value store, so restore the
-			// state.
-			byte[] serialized = Hex.decode(memberStr);
-			ByteArrayInputStream bis = new ByteArrayInputStream(serialized);
+		if (null == memberStr) {
+			return;
+		}
+		// The member was found in the key value store, so restore the state.
+		if (memberStr.startsWith(STATE_FORMAT_PREFIX)) {
 			try {
-				ObjectInputStream ois = new ObjectInputStream(bis);
-				Member state = (Member)ois.readObject();
-				if (state != null) {
-					this.name = state.name;
-			        this.roles = state.roles;
-			        this.account = state.account;
-			        this.affiliation = state.affiliation;
-			        this.enrollmentSecret = state.enrollmentSecret;
-			        this.enrollment = state.enrollment;
+				MemberState state = MemberState.parseFrom(
+						Base64.getDecoder().decode(memberStr.substring(STATE_FORMAT_PREFIX.length())));
+				this.name = state.getName();
+				this.roles = state.getRolesCount() == 0 ? null : new ArrayList<>(state.getRolesList());
+				this.account = emptyToNull(state.getAccount());
+				this.affiliation = emptyToNull(state.getAffiliation());
+				this.enrollmentSecret = emptyToNull(state.getEnrollmentSecret());
+				if (state.hasEnrollment()) {
+					EnrollmentState enrollmentState = state.getEnrollment();
+					this.enrollment = new Enrollment();
+					this.enrollment.setKey(emptyToNull(enrollmentState.getKey()));
+					this.enrollment.setCert(emptyToNull(enrollmentState.getCert()));
+					this.enrollment.setChainKey(emptyToNull(enrollmentState.getChainKey()));
+					this.enrollment.setQueryStateKey(emptyToNull(enrollmentState.getQueryStateKey()));
 				} else {
-					logger.debug(String.format("Could not find member %s from keyvalue store", this.name));
+					this.enrollment = null;
 				}
-			} catch (IOException | ClassNotFoundException e) {
+			} catch (InvalidProtocolBufferException | IllegalArgumentException e) {
 				logger.debug(String.format("Could not restore state of member %s", this.name), e);
 			}
+		} else if (restoreLegacyState(memberStr)) {
+			// Migrate the state saved by an older version to the current format
+			saveState();
 		}
    }
 
+   /**
+    * Restore the state saved by older versions: the hex encoded Java serialization of the member.
+    * @return true if the state was restored
+    */
+   private boolean restoreLegacyState(String memberStr) {
+		try {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(Hex.decode(memberStr)));
+			Member state = (Member)ois.readObject();
+			if (state != null) {
+				this.name = state.name;
+				this.roles = state.roles;
+				this.account = state.account;
+				this.affiliation = state.affiliation;
+				this.enrollmentSecret = state.enrollmentSecret;
+				this.enrollment = state.enrollment;
+				return true;
+			} else {
+				logger.debug(String.format("Could not find member %s from keyvalue store", this.name));
+			}
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			logger.debug(String.format("Could not restore state of member %s", this.name), e);
+		}
+		return false;
+   }
+
+   private static String emptyToNull(String value) {
+	   return value.isEmpty() ? null : value;
+   }
+
     public String getEnrollmentSecret() {
 		return enrollmentSecret;
 	}
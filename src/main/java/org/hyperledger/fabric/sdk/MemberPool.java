@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.hyperledger.fabric.sdk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.sdk.exception.ChainCodeException;
+import org.hyperledger.fabric.sdk.exception.CryptoException;
+import org.hyperledger.fabric.sdk.exception.NoAvailableTCertException;
+
+/**
+ * A pool of enrolled members on whose behalf transactions are submitted in turn.
+ * Each member has its own tcerts and prefetches them on its own, so spreading transactions
+ * over several members increases the number of tcerts available to the client.
+ */
+public class MemberPool {
+    private static final Log logger = LogFactory.getLog(MemberPool.class);
+
+    /**
+     * How the member issuing the next transaction is chosen.
+     */
+    public enum SelectionPolicy {
+        /** The member with the most tcerts available, then with the fewest transactions in flight. */
+        MOST_TCERTS_AVAILABLE,
+        /** The member with the fewest transactions in flight, then with the most tcerts available. */
+        LEAST_IN_FLIGHT
+    }
+
+    private final List<Member> members;
+    private final AtomicInteger[] inFlight;
+    private final SelectionPolicy selectionPolicy;
+    // Rotates the member checked first, so that ties are broken in turn
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Constructor for a member pool.
+     * @param members The enrolled members of the pool
+     * @param selectionPolicy How the member issuing each transaction is chosen
+     */
+    public MemberPool(Collection<Member> members, SelectionPolicy selectionPolicy) {
+        if (members == null || members.isEmpty()) {
+            throw new IllegalArgumentException("A member pool requires at least one member");
+        }
+        if (selectionPolicy == null) {
+            throw new IllegalArgumentException("A selection policy must be provided");
+        }
+        for (Member member : members) {
+            if (!member.isEnrolled()) {
+                throw new IllegalArgumentException(String.format("user '%s' is not enrolled", member.getName()));
+            }
+        }
+
+        this.members = new ArrayList<>(members);
+        this.inFlight = new AtomicInteger[this.members.size()];
+        for (int i = 0; i < this.inFlight.length; i++) {
+            this.inFlight[i] = new AtomicInteger();
+        }
+        this.selectionPolicy = selectionPolicy;
+    }
+
+    /**
+     * Get the members of this pool.
+     * @return the members
+     */
+    public List<Member> getMembers() {
+        return new ArrayList<>(this.members);
+    }
+
+    /**
+     * Get the number of transactions in flight for a member of this pool.
+     * @param member a member of this pool
+     * @return the number of transactions in flight
+     */
+    public int getInFlight(Member member) {
+        int index = this.members.indexOf(member);
+        if (index < 0) {
+            throw new IllegalArgumentException(String.format("user '%s' is not in the pool", member.getName()));
+        }
+        return this.inFlight[index].get();
+    }
+
+    /**
+     * Issue a deploy request on behalf of a member of this pool.
+     * @param deployRequest {@link DeployRequest}
+     * @return {@link ChainCodeResponse} response to chain code deploy transaction
+     * @throws ChainCodeException if the deployment fails.
+     */
+    public ChainCodeResponse deploy(DeployRequest deployRequest) throws ChainCodeException, NoAvailableTCertException, CryptoException, IOException {
+        int index = selectMember(null);
+        try {
+            return this.members.get(index).deploy(deployRequest);
+        } finally {
+            release(index);
+        }
+    }
+
+    /**
+     * Issue an invoke request on behalf of a member of this pool.
+     * @param invokeRequest {@link InvokeRequest}
+     * @throws ChainCodeException if the chain code invocation fails
+     */
+    public ChainCodeResponse invoke(InvokeRequest invokeRequest) throws ChainCodeException, NoAvailableTCertException, CryptoException, IOException {
+        int index = selectMember(invokeRequest.getAttributes());
+        try {
+            return this.members.get(index).invoke(invokeRequest);
+        } finally {
+            release(index);
+        }
+    }
+
+    /**
+     * Issue a query request on behalf of a member of this pool.
+     * @param queryRequest {@link QueryRequest}
+     * @throws ChainCodeException if the query transaction fails
+     */
+    public ChainCodeResponse query(QueryRequest queryRequest) throws ChainCodeException, NoAvailableTCertException, CryptoException, IOException {
+        int index = selectMember(queryRequest.getAttributes());
+        try {
+            return this.members.get(index).query(queryRequest);
+        } finally {
+            release(index);
+        }
+    }
+
+    /**
+     * Choose the member to issue the next transaction and count the transaction as in flight.
+     * The caller must release the returned member once the transaction completes.
+     * @return the index of the member
+     */
+    int selectMember(List<String> attrs) {
+        int size = this.members.size();
+        int start = Math.floorMod(this.next.getAndIncrement(), size);
+
+        int best = start;
+        int bestTCerts = this.members.get(start).getTCertCount(attrs);
+        int bestInFlight = this.inFlight[start].get();
+        for (int i = 1; i < size; i++) {
+            int index = (start + i) % size;
+            int tcerts = this.members.get(index).getTCertCount(attrs);
+            int inFlight = this.inFlight[index].get();
+            if (isBetter(tcerts, inFlight, bestTCerts, bestInFlight)) {
+                best = index;
+                bestTCerts = tcerts;
+                bestInFlight = inFlight;
+            }
+        }
+
+        this.inFlight[best].incrementAndGet();
+        logger.debug(String.format("MemberPool: selected member %s, tcerts=%d, inFlight=%d",
+                this.members.get(best).getName(), bestTCerts, bestInFlight));
+        return best;
+    }
+
+    /**
+     * Count a transaction of the member selected by {@link #selectMember(List)} as no longer in flight.
+     */
+    void release(int index) {
+        this.inFlight[index].decrementAndGet();
+    }
+
+    private boolean isBetter(int tcerts, int inFlight, int bestTCerts, int bestInFlight) {
+        if (this.selectionPolicy == SelectionPolicy.MOST_TCERTS_AVAILABLE) {
+            return tcerts > bestTCerts || (tcerts == bestTCerts && inFlight < bestInFlight);
+        } else {
+            return inFlight < bestInFlight || (inFlight == bestInFlight && tcerts > bestTCerts);
+        }
+    }
+}
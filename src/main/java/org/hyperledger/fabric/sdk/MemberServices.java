@@ -19,6 +19,8 @@ import org.hyperledger.fabric.sdk.exception.GetTCertBatchException;
 import org.hyperledger.fabric.sdk.exception.RegistrationException;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public interface MemberServices {
 
@@ -68,4 +70,45 @@ public interface MemberServices {
      */
     List<TCert> getTCertBatch(GetTCertBatchRequest req) throws GetTCertBatchException;
 
+    /**
+     * Register the member on the given executor.
+     * The default implementation only runs the blocking {@link #register(RegistrationRequest, Member)} call on
+     * the executor, which holds one of its threads for the whole request.
+     * @param req Registration request with the following fields: name, role
+     * @param registrar The identity of the registar (i.e. who is performing the registration)
+     * @param executor The executor on which the registration is performed
+     * @return a future completed with the enrollment secret, or with the {@link RegistrationException}
+     */
+    default CompletableFuture<String> registerAsync(RegistrationRequest req, Member registrar, Executor executor) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(register(req, registrar));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Enroll the member on the given executor.
+     * The default implementation only runs the blocking {@link #enroll(EnrollmentRequest)} call on the
+     * executor, which holds one of its threads for the whole request.
+     * @param req Enrollment request with the following fields: name, enrollmentSecret
+     * @param executor The executor on which the enrollment is performed
+     * @return a future completed with the enrollment details, or with the {@link EnrollmentException}
+     */
+    default CompletableFuture<Enrollment> enrollAsync(EnrollmentRequest req, Executor executor) {
+        CompletableFuture<Enrollment> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(enroll(req));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
 }
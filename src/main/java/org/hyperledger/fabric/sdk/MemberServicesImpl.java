@@ -39,17 +39,15 @@ import org.hyperledger.protos.TCAPGrpc.TCAPBlockingStub;
 import org.hyperledger.protos.TLSCAPGrpc.TLSCAPBlockingStub;
 import sun.security.util.DerInputStream;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.*;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * MemberServicesImpl is the default implementation of a member services client.
@@ -157,7 +155,7 @@ public class MemberServicesImpl implements MemberServices {
     	byte[] buffer = registerReq.toByteArray();
 
     	try {
-            java.security.PrivateKey signKey = cryptoPrimitives.ecdsaKeyFromPrivate(Hex.decode(registrar.getEnrollment().getKey()));
+            java.security.PrivateKey signKey = getEnrollmentPrivateKey(registrar.getEnrollment());
 	    	logger.debug("Retreived private key");
             BigInteger[] signature = cryptoPrimitives.ecdsaSign(signKey, buffer);
 	    	logger.debug("Signed the request with key");
@@ -260,7 +258,7 @@ public class MemberServicesImpl implements MemberServices {
             byte[] buf = tCertCreateSetReq.buildPartial().toByteArray();
 
             // sign the transaction using enrollment key
-            java.security.PrivateKey signKey = cryptoPrimitives.ecdsaKeyFromPrivate(Hex.decode(req.getEnrollment().getKey()));
+            java.security.PrivateKey signKey = getEnrollmentPrivateKey(req.getEnrollment());
             BigInteger[] sig = cryptoPrimitives.ecdsaSign(signKey, buf);
             Signature protoSig = Signature.newBuilder().setType(CryptoType.ECDSA).setR(ByteString.copyFrom(sig[0].toString().getBytes())).setS(ByteString.copyFrom(sig[1].toString().getBytes())).build();
             tCertCreateSetReq.setSig(protoSig);
@@ -277,11 +275,15 @@ public class MemberServicesImpl implements MemberServices {
 
     /**
      * Process a batch of tcerts after having retrieved them from the TCA.
+     * The enrollment key is decoded once for the whole batch and the private keys of the
+     * tcerts are derived in parallel.
      */
-    private List<TCert> processTCertBatch(GetTCertBatchRequest req, TCertCreateSetResp resp)
-            throws NoSuchPaddingException, InvalidKeyException, NoSuchAlgorithmException,
-            IllegalBlockSizeException, BadPaddingException, InvalidAlgorithmParameterException, CryptoException, IOException {
-        String enrollKey = req.getEnrollment().getKey();
+    List<TCert> processTCertBatch(GetTCertBatchRequest req, TCertCreateSetResp resp) throws CryptoException {
+        ECPrivateKey enrollKey = (ECPrivateKey) getEnrollmentPrivateKey(req.getEnrollment());
+        BigInteger n = enrollKey.getParameters().getN();
+        BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+        BigInteger enrollD = enrollKey.getD();
+
         byte[] tCertOwnerKDFKey = resp.getCerts().getKey().toByteArray();
         List<Ca.TCert> tCerts = resp.getCerts().getCertsList();
 
@@ -291,19 +293,34 @@ public class MemberServicesImpl implements MemberServices {
         byte[] tCertOwnerEncryptKey = Arrays.copyOfRange(cryptoPrimitives.calculateMac(tCertOwnerKDFKey, byte1), 0, 32);
         byte[] expansionKey = cryptoPrimitives.calculateMac(tCertOwnerKDFKey, byte2);
 
-        List<TCert> tCertBatch = new ArrayList<>(tCerts.size());
-
-        // Loop through certs and extract private keys
-        for (Ca.TCert tCert : tCerts) {
-            X509Certificate x509Certificate;
-            try {
-                CertificateFactory cf = CertificateFactory.getInstance("X.509");
-                x509Certificate = (X509Certificate)cf.generateCertificate(tCert.getCert().newInput());
-            } catch (Exception ex) {
-                logger.debug("Warning: problem parsing certificate bytes; retrying ... ", ex);
-                continue;
-            }
+        // Extract the private keys of the certs, keeping the order in which the TCA returned them
+        List<TCert> tCertBatch = tCerts.parallelStream()
+                .map(tCert -> deriveTCert(tCert, tCertOwnerEncryptKey, expansionKey, enrollD, n, nMinusOne))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        if (tCertBatch.size() == 0) {
+            throw new RuntimeException("Failed fetching TCertBatch. No valid TCert received.");
+        }
+
+        return tCertBatch;
+    }
+
+    /**
+     * Compute the private key of a single tcert.
+     * @return the tcert, or null if the certificate bytes could not be parsed
+     */
+    private TCert deriveTCert(Ca.TCert tCert, byte[] tCertOwnerEncryptKey, byte[] expansionKey,
+                              BigInteger enrollD, BigInteger n, BigInteger nMinusOne) {
+        X509Certificate x509Certificate;
+        try {
+            x509Certificate = cryptoPrimitives.bytesToCertificate(tCert.getCert().newInput());
+        } catch (Exception ex) {
+            logger.debug("Warning: problem parsing certificate bytes; retrying ... ", ex);
+            return null;
+        }
 
+        try {
             // extract the encrypted bytes from extension attribute
             byte[] tCertIndexCT = fromDer(x509Certificate.getExtensionValue(TCERT_ENC_TCERT_INDEX));
             byte[] tCertIndex = cryptoPrimitives.aesCBCPKCS7Decrypt(tCertOwnerEncryptKey, tCertIndexCT);
@@ -312,24 +329,27 @@ public class MemberServicesImpl implements MemberServices {
 
             // compute the private key
             BigInteger k = new BigInteger(1, expansionValue);
-            BigInteger n = ((ECPrivateKey)cryptoPrimitives.ecdsaKeyFromPrivate(Hex.decode(enrollKey)))
-                    .getParameters().getN().subtract(BigInteger.ONE);
-            k = k.mod(n).add(BigInteger.ONE);
+            k = k.mod(nMinusOne).add(BigInteger.ONE);
 
-            BigInteger D = ((ECPrivateKey) cryptoPrimitives.ecdsaKeyFromPrivate(Hex.decode(enrollKey))).getD().add(k);
-            D = D.mod(((ECPrivateKey)cryptoPrimitives.ecdsaKeyFromPrivate(Hex.decode(enrollKey))).getParameters().getN());
+            BigInteger D = enrollD.add(k).mod(n);
 
             // Put private and public key in returned tcert
-            TCert tcert = new TCert(tCert.getCert().toByteArray(), cryptoPrimitives.ecdsaKeyFromBigInt(D));
-
-            tCertBatch.add(tcert);
+            return new TCert(tCert.getCert().toByteArray(), cryptoPrimitives.ecdsaKeyFromBigInt(D));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to compute the private key of a TCert", e);
         }
+    }
 
-        if (tCertBatch.size() == 0) {
-            throw new RuntimeException("Failed fetching TCertBatch. No valid TCert received.");
+    /**
+     * Get the enrollment private key, decoding it only the first time it is used.
+     */
+    private java.security.PrivateKey getEnrollmentPrivateKey(Enrollment enrollment) throws CryptoException {
+        java.security.PrivateKey privateKey = enrollment.getPrivateKey();
+        if (privateKey == null) {
+            privateKey = cryptoPrimitives.ecdsaKeyFromPrivate(Hex.decode(enrollment.getKey()));
+            enrollment.setPrivateKey(privateKey);
         }
-
-        return tCertBatch;
+        return privateKey;
     }
 
     /*
@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A local key value store split into shard files under a directory.
+ * Names are hashed to a shard, and each shard is a small properties file with its own lock and
+ * in-memory copy, so that saving members that fall in different shards never contend and a lookup
+ * only ever loads one shard. A shard file is replaced atomically on each write.
+ * The number of shards is fixed when the directory is created.
+ * This implements the KeyValStore interface.
+ */
+public class ShardedKeyValStore implements KeyValStore {
+    private static final Log logger = LogFactory.getLog(ShardedKeyValStore.class);
+
+    // Default number of shard files
+    public static final int DEFAULT_SHARD_COUNT = 64;
+
+    private static final String SHARD_COUNT_FILE = "shards";
+
+    private final Path directory;
+    private final Shard[] shards;
+
+    public ShardedKeyValStore(String directory) {
+        this(directory, DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * Open the store kept in the given directory, creating it with the given number of shards if needed.
+     * @param directory the directory of the shard files
+     * @param shardCount the number of shards of a new store; an existing store keeps its number of shards
+     */
+    public ShardedKeyValStore(String directory, int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        this.directory = Paths.get(directory);
+        try {
+            Files.createDirectories(this.directory);
+            Path shardCountFile = this.directory.resolve(SHARD_COUNT_FILE);
+            if (Files.exists(shardCountFile)) {
+                int existingShardCount = Integer.parseInt(
+                        new String(Files.readAllBytes(shardCountFile), StandardCharsets.UTF_8).trim());
+                if (existingShardCount != shardCount) {
+                    logger.info(String.format("Using the %d shards of the existing keyvalue store in \"%s\"",
+                            existingShardCount, directory));
+                }
+                shardCount = existingShardCount;
+            } else {
+                Files.write(shardCountFile, Integer.toString(shardCount).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new RuntimeException(String.format("Could not open keyvalue store in directory \"%s\"", directory), e);
+        }
+
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(this.directory.resolve(String.format("shard-%04d.properties", i)));
+        }
+    }
+
+    /**
+     * Get the value associated with name.
+     * @param name
+     * @return value associated with the name
+     */
+    public String getValue(String name) {
+        return getShard(name).getValue(name);
+    }
+
+    /**
+     * Set the value associated with name. A null value removes the name.
+     * @param name
+     * @param value
+     */
+    public void setValue(String name, String value) {
+        Map<String, String> values = new HashMap<>();
+        values.put(name, value);
+        getShard(name).setValues(values);
+    }
+
+    /**
+     * Set several values, writing each shard they fall in only once.
+     * @param values the values to set, by name
+     */
+    @Override
+    public void setValues(Map<String, String> values) {
+        Map<Shard, Map<String, String>> valuesByShard = new HashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            valuesByShard.computeIfAbsent(getShard(entry.getKey()), shard -> new HashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Shard, Map<String, String>> entry : valuesByShard.entrySet()) {
+            entry.getKey().setValues(entry.getValue());
+        }
+    }
+
+    /**
+     * Get the number of shards of this store.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    private Shard getShard(String name) {
+        // String.hashCode is specified, so names map to the same shard across runs
+        return shards[Math.floorMod(name.hashCode(), shards.length)];
+    }
+
+    private static final class Shard {
+        private final Path file;
+        private Properties properties;
+
+        Shard(Path file) {
+            this.file = file;
+        }
+
+        synchronized String getValue(String name) {
+            return load().getProperty(name);
+        }
+
+        synchronized void setValues(Map<String, String> values) {
+            Properties updated = new Properties();
+            updated.putAll(load());
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (entry.getValue() == null) {
+                    updated.remove(entry.getKey());
+                } else {
+                    updated.setProperty(entry.getKey(), entry.getValue());
+                }
+            }
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                try (OutputStream output = Files.newOutputStream(tmp)) {
+                    updated.store(output, "");
+                }
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                properties = updated;
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Could not save the keyvalue store shard \"%s\"", file), e);
+            }
+        }
+
+        // A shard that could not be read is not cached, and never written, so its other names are not lost
+        private Properties load() {
+            if (properties == null) {
+                Properties loaded = new Properties();
+                try (InputStream input = Files.newInputStream(file)) {
+                    loaded.load(input);
+                } catch (NoSuchFileException e) {
+                    // Nothing saved in this shard yet
+                } catch (IOException e) {
+                    throw new RuntimeException(String.format("Could not load keyvalue store shard \"%s\"", file), e);
+                }
+                properties = loaded;
+            }
+            return properties;
+        }
+    }
+}
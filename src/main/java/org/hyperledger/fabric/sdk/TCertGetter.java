@@ -14,12 +14,30 @@
 
 package org.hyperledger.fabric.sdk;
 
+import io.netty.util.internal.StringUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.hyperledger.fabric.sdk.exception.GetTCertBatchException;
+import org.bouncycastle.util.encoders.Hex;
+import org.hyperledger.fabric.sdk.exception.CryptoException;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+import org.hyperledger.fabric.sdk.stats.Rate;
+import org.hyperledger.fabric.sdk.stats.ResponseTime;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.interfaces.ECPrivateKey;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 // A class to get TCerts.
 // There is one class per set of attributes requested by each member.
@@ -27,17 +45,26 @@ public class TCertGetter {
 
     private static final Log logger = LogFactory.getLog(TCertGetter.class);
 
+    // Time (in ms) added to the TCA response time so a prefetched batch arrives before the pool runs out
+    private static final long PREFETCH_BUFFER_TIME = 1000;
+
+    // Label used to derive the key encrypting saved tcerts from the enrollment key
+    private static final byte[] SAVED_TCERTS_KEY_LABEL = "tcert-store".getBytes(StandardCharsets.UTF_8);
+    private static final int SAVED_TCERTS_VERSION = 1;
+
     private Chain chain;
     private Member member;
     private List<String> attrs;
     private String key;
     private MemberServices memberServices;
-    private Stack<TCert> tcerts;
-//TODO implement stats
-//    private stats.Rate arrivalRate = new stats.Rate();
-//    private stats.ResponseTime getTCertResponseTime = new stats.ResponseTime();
-//    private getTCertWaiters:GetTCertCallback[] = [];
-    private boolean gettingTCerts = false;
+    private TCertPool tcerts;
+    // Package-private so that tests can fix the rates the prefetch threshold is based on
+    Rate arrivalRate = new Rate();
+    ResponseTime getTCertResponseTime = new ResponseTime();
+    // The batch request in flight, if any. Concurrent refills share it.
+    private AtomicReference<CompletableFuture<Void>> gettingTCerts = new AtomicReference<>();
+    // Whether the tcerts saved by a previous run have been restored
+    private AtomicBoolean restored = new AtomicBoolean(false);
 
     /**
     * Constructor for a member.
@@ -51,7 +78,7 @@ public class TCertGetter {
         this.key = key;
         this.chain = member.getChain();
         this.memberServices = member.getMemberServices();
-        this.tcerts = new Stack<>();
+        this.tcerts = new TCertPool(this.chain.getCryptoPrimitives());
     }
 
     /**
@@ -68,76 +95,220 @@ public class TCertGetter {
 
     /**
     * Get the next available transaction certificate.
+    * Waits on member services only if no tcert is available.
+    * @return a tcert, or null if none could be retrieved
     */
     public TCert getNextTCert() {
 
-//TODO    	self.arrivalRate.tick();
+        restoreTCerts();
+
+        arrivalRate.tick();
 
-        if (shouldGetTCerts()) {
-            getTCerts();
+        TCert tcert = tcerts.poll();
+
+        // In prefetch mode, refill in the background before the pool runs out
+        CompletableFuture<Void> request = null;
+        if (chain.isPreFetchMode() && shouldGetTCerts()) {
+            request = getTCerts();
         }
 
-        if (tcerts.size() > 0) {
-            return tcerts.pop();
-        } else {
-            return null;
+        while (tcert == null) {
+            // Wait for the prefetch just started, which may already be done, before requesting another batch
+            if (request == null) {
+                request = getTCerts();
+            }
+            try {
+                request.join();
+            } catch (CompletionException e) {
+                return null;
+            }
+            request = null;
+            tcert = tcerts.poll();
         }
+
+        return tcert;
     }
 
-    // Determine if we should issue a request to get more tcerts now.
-    private boolean shouldGetTCerts() {
-        return tcerts.size() == 0;        //TODO implement shouldGetTCerts
+    /**
+     * Get the number of tcerts currently available.
+     * @return the number of tcerts available
+     */
+    public int getTCertCount() {
+        return tcerts.size();
+    }
+
+    /**
+     * Save the unused tcerts to the key value store of the chain, encrypted with a key derived from
+     * the enrollment key, so that they can be used after a restart.
+     * The saved tcerts are removed from this getter, so that a tcert is never used both by this
+     * process and by the one restoring it.
+     */
+    public void saveTCerts() {
+        KeyValStore keyValStore = chain.getKeyValStore();
+        CryptoPrimitives crypto = chain.getCryptoPrimitives();
+        if (keyValStore == null || crypto == null) {
+            return;
+        }
+
+        // Merge with tcerts saved by a previous run that were not restored yet
+        restoreTCerts();
+
+        List<TCert> unused = new ArrayList<>();
+        tcerts.drainTo(unused);
+        if (unused.isEmpty()) {
+            return;
+        }
+
+        try {
+            byte[] encrypted = crypto.aes256GCMEncrypt(getSavedTCertsKey(crypto), encodeTCerts(unused));
+            keyValStore.setValue(getKeyValStoreName(), Hex.toHexString(encrypted));
+            logger.debug(String.format("Saved %d tcerts for member %s, key=%s", unused.size(), member.getName(), key));
+        } catch (CryptoException | IOException e) {
+            logger.warn(String.format("Could not save tcerts of member %s", member.getName()), e);
+        }
+    }
 
+    // Restore the tcerts saved by a previous run, the first time this is called
+    private void restoreTCerts() {
+        if (restored.get() || !restored.compareAndSet(false, true)) {
+            return;
+        }
+        KeyValStore keyValStore = chain.getKeyValStore();
+        CryptoPrimitives crypto = chain.getCryptoPrimitives();
+        if (keyValStore == null || crypto == null) {
+            return;
+        }
 
-    	/*
-    	let self = this;
+        String saved = keyValStore.getValue(getKeyValStoreName());
+        if (StringUtil.isNullOrEmpty(saved)) {
+            return;
+        }
+        List<TCert> restoredTCerts;
+        try {
+            restoredTCerts = decodeTCerts(crypto, crypto.aes256GCMDecrypt(getSavedTCertsKey(crypto), Hex.decode(saved)));
+        } catch (CryptoException | IOException | RuntimeException e) {
+            // Leave the saved tcerts in the store, e.g. for a later run enrolled with the key that encrypted them
+            logger.warn(String.format("Could not restore tcerts of member %s", member.getName()), e);
+            return;
+        }
+        // Remove the saved tcerts from the store before using any of them, so they can't be restored twice
+        keyValStore.setValue(getKeyValStoreName(), "");
+        tcerts.addAll(restoredTCerts);
+        logger.debug(String.format("Restored %d tcerts for member %s, key=%s", restoredTCerts.size(), member.getName(), key));
+    }
+
+    private String getKeyValStoreName() {
+        return "tcerts." + member.getName() + "." + key;
+    }
+
+    private byte[] getSavedTCertsKey(CryptoPrimitives crypto) throws CryptoException {
+        return crypto.hmacAESTruncated(Hex.decode(member.getEnrollment().getKey()), SAVED_TCERTS_KEY_LABEL);
+    }
+
+    private static byte[] encodeTCerts(List<TCert> tcerts) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(SAVED_TCERTS_VERSION);
+        out.writeInt(tcerts.size());
+        for (TCert tcert : tcerts) {
+            byte[] privateKey = ((ECPrivateKey) tcert.getPrivateKey()).getS().toByteArray();
+            out.writeInt(tcert.getCert().length);
+            out.write(tcert.getCert());
+            out.writeInt(privateKey.length);
+            out.write(privateKey);
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    private static List<TCert> decodeTCerts(CryptoPrimitives crypto, byte[] encoded) throws IOException, CryptoException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        int version = in.readInt();
+        if (version != SAVED_TCERTS_VERSION) {
+            throw new IOException(String.format("Unsupported saved tcerts version %d", version));
+        }
+        int count = in.readInt();
+        List<TCert> tcerts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] cert = new byte[in.readInt()];
+            in.readFully(cert);
+            byte[] privateKey = new byte[in.readInt()];
+            in.readFully(privateKey);
+            tcerts.add(new TCert(cert, crypto.ecdsaKeyFromBigInt(new BigInteger(privateKey))));
+        }
+        return tcerts;
+    }
+
+    // Determine if we should prefetch more tcerts now.
+    private boolean shouldGetTCerts() {
         // Do nothing if we are already getting more tcerts
-        if (self.gettingTCerts) {
-            debug("shouldGetTCerts: no, already getting tcerts");
+        if (gettingTCerts.get() != null) {
+            logger.trace("shouldGetTCerts: no, already getting tcerts");
             return false;
         }
         // If there are none, then definitely get more
-        if (self.tcerts.length == 0) {
-            debug("shouldGetTCerts: yes, we have no tcerts");
+        int tcertCount = tcerts.size();
+        if (tcertCount == 0) {
+            logger.trace("shouldGetTCerts: yes, we have no tcerts");
             return true;
         }
-        // If we aren't in prefetch mode, return false;
-        if (!self.chain.isPreFetchMode()) {
-            debug("shouldGetTCerts: no, prefetch disabled");
-            return false;
-        }
         // Otherwise, see if we should prefetch based on the arrival rate
         // (i.e. the rate at which tcerts are requested) and the response
         // time.
         // "arrivalRate" is in req/ms and "responseTime" in ms,
-        // so "tcertCountThreshold" is number of tcerts at which we should
+        // so "tcertThreshold" is number of tcerts at which we should
         // request the next batch of tcerts so we don't have to wait on the
         // transaction path.  Note that we add 1 sec to the average response
         // time to add a little buffer time so we don't have to wait.
-        let arrivalRate = self.arrivalRate.getValue();
-        let responseTime = self.getTCertResponseTime.getValue() + 1000;
-        let tcertThreshold = arrivalRate * responseTime;
-        let tcertCount = self.tcerts.length;
-        let result = tcertCount <= tcertThreshold;
-        debug(util.format("shouldGetTCerts: %s, threshold=%s, count=%s, rate=%s, responseTime=%s",
-        result, tcertThreshold, tcertCount, arrivalRate, responseTime));
+        double rate = arrivalRate.getValue();
+        double responseTime = getTCertResponseTime.getValue() + PREFETCH_BUFFER_TIME;
+        double tcertThreshold = rate * responseTime;
+        boolean result = tcertCount <= tcertThreshold;
+        if (logger.isTraceEnabled()) {
+            logger.trace(String.format("shouldGetTCerts: %s, threshold=%s, count=%s, rate=%s, responseTime=%s",
+                    result, tcertThreshold, tcertCount, rate, responseTime));
+        }
         return result;
+    }
 
-        */
+    // Call member services to get more tcerts in the background.
+    // Only one request is in flight at a time: concurrent callers get the pending one.
+    private CompletableFuture<Void> getTCerts() {
+        while (true) {
+            CompletableFuture<Void> pending = gettingTCerts.get();
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<Void> request = new CompletableFuture<>();
+            if (gettingTCerts.compareAndSet(null, request)) {
+                try {
+                    chain.getTCertExecutor().execute(() -> fetchTCerts(request));
+                } catch (RejectedExecutionException e) {
+                    // Fall back to fetching on the calling thread
+                    fetchTCerts(request);
+                }
+                return request;
+            }
+        }
     }
 
-    // Call member services to get more tcerts
-    private void getTCerts() {
+    private void fetchTCerts(CompletableFuture<Void> request) {
         GetTCertBatchRequest req = new GetTCertBatchRequest(this.member.getName(), this.member.getEnrollment(),
                 this.member.getTCertBatchSize(), attrs);
+        long start = getTCertResponseTime.start();
         try {
             List<TCert> tcerts = this.memberServices.getTCertBatch(req);
+            getTCertResponseTime.stop(start);
             // Add to member's tcert list
-            for (TCert tcert : tcerts) {
-                this.tcerts.push(tcert);
-            }
-        } catch (GetTCertBatchException e) {
-            // ignore the exception for now
+            this.tcerts.addAll(tcerts);
+            // Clear the pending request before completing it, so that waiters that find
+            // the pool empty again issue a new request
+            gettingTCerts.compareAndSet(request, null);
+            request.complete(null);
+        } catch (Throwable e) {
+            logger.debug(String.format("Failed getting tcerts for key %s", key), e);
+            gettingTCerts.compareAndSet(request, null);
+            request.completeExceptionally(e);
         }
     }
 } // end TCertGetter
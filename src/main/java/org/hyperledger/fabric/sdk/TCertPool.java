@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.hyperledger.fabric.sdk;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPrivateKey;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.hyperledger.fabric.sdk.exception.CryptoException;
+import org.hyperledger.fabric.sdk.helper.DirectBufferPool;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+
+/**
+ * A thread-safe pool of tcerts stored compactly in direct (off-heap) buffers.
+ * Each tcert is kept as its private key scalar and its DER encoded certificate, and is
+ * turned back into a {@link TCert} only when it is taken from the pool.
+ */
+class TCertPool {
+
+    private final CryptoPrimitives cryptoPrimitives;
+    private final DirectBufferPool bufferPool;
+    private final BlockingQueue<ByteBuffer> entries = new LinkedBlockingQueue<>();
+
+    /**
+     * @param cryptoPrimitives used to rebuild private keys
+     */
+    TCertPool(CryptoPrimitives cryptoPrimitives) {
+        this(cryptoPrimitives, DirectBufferPool.getDefault());
+    }
+
+    TCertPool(CryptoPrimitives cryptoPrimitives, DirectBufferPool bufferPool) {
+        this.cryptoPrimitives = cryptoPrimitives;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Add tcerts to the pool.
+     * @param tcerts the tcerts to add
+     */
+    void addAll(Collection<TCert> tcerts) {
+        for (TCert tcert : tcerts) {
+            entries.add(encode(tcert));
+        }
+    }
+
+    /**
+     * Take a tcert from the pool.
+     * @return a tcert, or null if the pool is empty
+     */
+    TCert poll() {
+        ByteBuffer entry = entries.poll();
+        return entry == null ? null : decode(entry);
+    }
+
+    /**
+     * Take all the tcerts from the pool.
+     * @param tcerts the list to which the tcerts are added
+     */
+    void drainTo(List<TCert> tcerts) {
+        ByteBuffer entry;
+        while ((entry = entries.poll()) != null) {
+            tcerts.add(decode(entry));
+        }
+    }
+
+    /**
+     * Get the number of tcerts in the pool.
+     * @return the number of tcerts
+     */
+    int size() {
+        return entries.size();
+    }
+
+    // Layout: key length (1 byte), private key scalar, DER encoded certificate
+    private ByteBuffer encode(TCert tcert) {
+        byte[] key = ((ECPrivateKey) tcert.getPrivateKey()).getS().toByteArray();
+        byte[] cert = tcert.getCert();
+
+        ByteBuffer entry = bufferPool.acquire(1 + key.length + cert.length);
+        entry.put((byte) key.length).put(key).put(cert);
+        entry.flip();
+        return entry;
+    }
+
+    private TCert decode(ByteBuffer entry) {
+        try {
+            byte[] key = new byte[entry.get() & 0xFF];
+            entry.get(key);
+            byte[] cert = new byte[entry.remaining()];
+            entry.get(cert);
+
+            PrivateKey privateKey = cryptoPrimitives.ecdsaKeyFromBigInt(new BigInteger(key));
+            return new TCert(cert, privateKey);
+        } catch (CryptoException e) {
+            throw new RuntimeException("Unable to rebuild the private key of a tcert", e);
+        } finally {
+            bufferPool.release(entry);
+        }
+    }
+}
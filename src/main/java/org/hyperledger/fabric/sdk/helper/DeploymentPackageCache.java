@@ -0,0 +1,154 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.crypto.digests.SHA3Digest;
+import org.bouncycastle.util.encoders.Hex;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.ByteString;
+
+/**
+ * Cache of chaincode deployment packages, keyed by {@link #getKey(String, String, File, Map)}, which covers
+ * everything the package is built from: the deployment hash of the parameters and file contents, the
+ * paths and executable bits of the files, the extra entries such as the Dockerfile, and the package format.
+ * Since deployment packages are reproducible, a package found in the cache is the one that would be built.
+ * Packages are kept in memory up to a total size and, if there is a cache directory, in files of that directory.
+ */
+public class DeploymentPackageCache {
+	private static final Log logger = LogFactory.getLog(DeploymentPackageCache.class);
+
+	// Maximum total size of the packages kept in memory
+	private static final long MAX_IN_MEMORY_SIZE = 64 * 1024 * 1024;
+	private static final String PACKAGE_DIRECTORY = "packages";
+	private static final String PACKAGE_FILE_SUFFIX = ".tar.gz";
+	// Version of the packages built by SDKUtil.generateTarGz, to increment when they change
+	private static final int PACKAGE_FORMAT_VERSION = 1;
+
+	private static final DeploymentPackageCache inMemory = new DeploymentPackageCache(null);
+	private static final ConcurrentHashMap<Path, DeploymentPackageCache> caches = new ConcurrentHashMap<>();
+
+	private final Path directory;
+	private final Cache<String, ByteString> packages = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_IN_MEMORY_SIZE)
+			.<String, ByteString>weigher((key, value) -> value.size())
+			.build();
+
+	private DeploymentPackageCache(Path directory) {
+		this.directory = directory == null ? null : directory.resolve(PACKAGE_DIRECTORY);
+	}
+
+	/**
+	 * Get the cache kept in the given directory.
+	 * @param directory the cache directory, or null for a cache kept in memory only
+	 * @return the cache, shared by all users of the directory
+	 */
+	public static DeploymentPackageCache getInstance(String directory) {
+		if (directory == null) {
+			return inMemory;
+		}
+		return caches.computeIfAbsent(Paths.get(directory).toAbsolutePath(), DeploymentPackageCache::new);
+	}
+
+	/**
+	 * Get the key of the package built by SDKUtil.generateTarGz from a chaincode directory.
+	 * Only the file paths and modes are read, as the contents are covered by the deployment hash.
+	 * @param language the chaincode language
+	 * @param hash the deployment hash, covering the deployment parameters and the contents of the directory
+	 * @param sourceDirectory the chaincode directory
+	 * @param extraEntries the entries added to the directory contents
+	 * @return the package key
+	 */
+	public static String getKey(String language, String hash, File sourceDirectory, Map<String, byte[]> extraEntries) {
+		SHA3Digest digest = new SHA3Digest();
+		update(digest, String.format("%d\0%s\0%s\0", PACKAGE_FORMAT_VERSION, language, hash).getBytes(StandardCharsets.UTF_8));
+		for (Map.Entry<String, File> file : SDKUtil.listArchiveFiles(sourceDirectory).entrySet()) {
+			if (!extraEntries.containsKey(file.getKey())) {
+				update(digest, String.format("%s\0%s\0", file.getKey(), file.getValue().canExecute() ? "x" : "-")
+						.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		for (Map.Entry<String, byte[]> entry : new TreeMap<>(extraEntries).entrySet()) {
+			update(digest, String.format("%s\0%d\0", entry.getKey(), entry.getValue().length).getBytes(StandardCharsets.UTF_8));
+			update(digest, entry.getValue());
+		}
+		byte[] key = new byte[digest.getDigestSize()];
+		digest.doFinal(key, 0);
+		return language + "-" + Hex.toHexString(key);
+	}
+
+	private static void update(SHA3Digest digest, byte[] input) {
+		digest.update(input, 0, input.length);
+	}
+
+	/**
+	 * Get the package built for a key.
+	 * @param key the package key
+	 * @return the package, or null if it is not cached
+	 */
+	public ByteString get(String key) {
+		ByteString data = packages.getIfPresent(key);
+		if (data == null && directory != null) {
+			try {
+				data = ByteString.copyFrom(Files.readAllBytes(directory.resolve(key + PACKAGE_FILE_SUFFIX)));
+				packages.put(key, data);
+			} catch (NoSuchFileException e) {
+				// Not cached
+			} catch (IOException e) {
+				logger.warn(String.format("Could not read cached deployment package %s, reason:%s", key, e.getMessage()));
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Cache the package built for a key.
+	 * @param key the package key
+	 * @param data the package
+	 */
+	public void put(String key, ByteString data) {
+		packages.put(key, data);
+		if (directory == null) {
+			return;
+		}
+		Path file = directory.resolve(key + PACKAGE_FILE_SUFFIX);
+		try {
+			Files.createDirectories(directory);
+			Path tmp = Files.createTempFile(directory, key, ".tmp");
+			try (OutputStream output = Files.newOutputStream(tmp)) {
+				data.writeTo(output);
+			}
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			logger.warn(String.format("Could not cache deployment package %s, reason:%s", key, e.getMessage()));
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.hyperledger.fabric.sdk.helper;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct (off-heap) buffers.
+ * Buffers are carved out of large direct slabs in power-of-two size classes, and released buffers
+ * are reused for later allocations of the same size class.
+ * Released buffers are zeroed, as they may hold key material.
+ * At most {@code maxFreeBytes} of free buffers are kept per size class; the others are dropped, and a
+ * slab is freed by the garbage collector once none of its buffers is referenced.
+ * Requests larger than a slab get a dedicated direct buffer which is not pooled.
+ */
+public class DirectBufferPool {
+
+	private static final int MIN_SLOT_SIZE_SHIFT = 8;
+	private static final int SLAB_SIZE_SHIFT = 18;
+	private static final int SLAB_SIZE = 1 << SLAB_SIZE_SHIFT;
+	private static final byte[] ZEROS = new byte[4096];
+
+	// Default maximum number of bytes of free buffers kept per size class
+	public static final int DEFAULT_MAX_FREE_BYTES = 4 * SLAB_SIZE;
+
+	private static final DirectBufferPool defaultPool = new DirectBufferPool();
+
+	private final ConcurrentLinkedQueue<ByteBuffer>[] freeSlots;
+	private final AtomicInteger[] freeCounts;
+	private final int maxFreeBytes;
+
+	public DirectBufferPool() {
+		this(DEFAULT_MAX_FREE_BYTES);
+	}
+
+	/**
+	 * @param maxFreeBytes the maximum number of bytes of free buffers kept per size class
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public DirectBufferPool(int maxFreeBytes) {
+		this.maxFreeBytes = maxFreeBytes;
+		freeSlots = new ConcurrentLinkedQueue[SLAB_SIZE_SHIFT - MIN_SLOT_SIZE_SHIFT + 1];
+		freeCounts = new AtomicInteger[freeSlots.length];
+		for (int i = 0; i < freeSlots.length; i++) {
+			freeSlots[i] = new ConcurrentLinkedQueue<>();
+			freeCounts[i] = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * Get the pool shared by the SDK.
+	 * @return the default pool
+	 */
+	public static DirectBufferPool getDefault() {
+		return defaultPool;
+	}
+
+	/**
+	 * Acquire a direct buffer of at least the given size.
+	 * The returned buffer has position 0 and limit size.
+	 * @param size number of bytes needed
+	 * @return a direct buffer
+	 */
+	public ByteBuffer acquire(int size) {
+		if (size > SLAB_SIZE) {
+			return ByteBuffer.allocateDirect(size);
+		}
+		int sizeClass = sizeClass(size);
+		ByteBuffer slot = freeSlots[sizeClass].poll();
+		if (slot == null) {
+			slot = allocateSlab(sizeClass);
+		} else {
+			freeCounts[sizeClass].decrementAndGet();
+		}
+		slot.clear().limit(size);
+		return slot;
+	}
+
+	/**
+	 * Release a buffer obtained from {@link #acquire(int)}.
+	 * The buffer must not be used after it is released.
+	 * @param buffer the buffer to release
+	 */
+	public void release(ByteBuffer buffer) {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			buffer.put(ZEROS, 0, Math.min(ZEROS.length, buffer.remaining()));
+		}
+		int capacity = buffer.capacity();
+		if (capacity > SLAB_SIZE) {
+			return;
+		}
+		offer(sizeClass(capacity), buffer);
+	}
+
+	/**
+	 * Get the number of free buffers kept for the size class of the given size.
+	 * @param size a buffer size, at most the slab size
+	 * @return the number of free buffers
+	 */
+	public int getFreeCount(int size) {
+		return freeCounts[sizeClass(size)].get();
+	}
+
+	private void offer(int sizeClass, ByteBuffer slot) {
+		int maxFree = maxFreeBytes >> (sizeClass + MIN_SLOT_SIZE_SHIFT);
+		if (freeCounts[sizeClass].incrementAndGet() > maxFree) {
+			freeCounts[sizeClass].decrementAndGet();
+			return;
+		}
+		freeSlots[sizeClass].offer(slot);
+	}
+
+	// Allocate a slab, offer all of its slots but one to the free list and return that one
+	private ByteBuffer allocateSlab(int sizeClass) {
+		int slotSize = 1 << (sizeClass + MIN_SLOT_SIZE_SHIFT);
+		ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+		for (int offset = slotSize; offset < SLAB_SIZE; offset += slotSize) {
+			slab.limit(offset + slotSize).position(offset);
+			offer(sizeClass, slab.slice());
+		}
+		slab.clear().limit(slotSize);
+		return slab.slice();
+	}
+
+	private static int sizeClass(int size) {
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+		return Math.max(shift, MIN_SLOT_SIZE_SHIFT) - MIN_SLOT_SIZE_SHIFT;
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.crypto.digests.SHA3Digest;
+import org.bouncycastle.util.encoders.Hex;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the per-file hashes computed by
+ * {@link SDKUtil#generateDirectoryHash(String, String, String, DirectoryHashCache)}.
+ * Files are identified by path, size and modification time, and an unchanged file is never read again:
+ * <ul>
+ * <li>the hash of a file chained after a given previous hash is kept, in a file of the cache directory
+ * if there is one, so that hashing an unchanged tree again reads no file at all;</li>
+ * <li>the digest state after absorbing the contents of a file is kept in memory, so that when an earlier
+ * file of the tree changed, the following files are not read again to chain them after the new hash.</li>
+ * </ul>
+ * As in git, a file modified less than two seconds before it is hashed is not cached, since it may be
+ * modified again without changing its size and modification time. At most 10000 hashes are kept, the
+ * least recently used ones being dropped.
+ */
+public class DirectoryHashCache {
+	private static final Log logger = LogFactory.getLog(DirectoryHashCache.class);
+
+	private static final String CACHE_FILE = "dirhash.properties";
+	private static final int MAX_ABSORBED_FILES = 10000;
+	private static final int MAX_CACHED_HASHES = 10000;
+	// Covers the modification time granularity of common file systems
+	private static final long RACY_WINDOW = 2000;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private static final DirectoryHashCache inMemory = new DirectoryHashCache(null);
+	private static final ConcurrentHashMap<Path, DirectoryHashCache> caches = new ConcurrentHashMap<>();
+
+	private final Path file;
+	private final Cache<String, String> hashes = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_HASHES)
+			.build();
+	private final Cache<String, AbsorbedFile> absorbedFiles = CacheBuilder.newBuilder()
+			.maximumSize(MAX_ABSORBED_FILES)
+			.build();
+	private volatile boolean dirty;
+
+	/**
+	 * @param directory the cache directory, or null for a cache kept in memory only
+	 */
+	DirectoryHashCache(Path directory) {
+		this.file = directory == null ? null : directory.resolve(CACHE_FILE);
+		if (file != null) {
+			try (InputStream input = Files.newInputStream(file)) {
+				Properties saved = new Properties();
+				saved.load(input);
+				for (String key : saved.stringPropertyNames()) {
+					hashes.put(key, saved.getProperty(key));
+				}
+			} catch (NoSuchFileException e) {
+				// Nothing cached yet
+			} catch (IOException e) {
+				logger.warn(String.format("Could not load directory hash cache \"%s\", reason:%s", file, e.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * Get the cache kept in the given directory.
+	 * @param directory the cache directory, or null for a cache kept in memory only
+	 * @return the cache, shared by all users of the directory
+	 */
+	public static DirectoryHashCache getInstance(String directory) {
+		if (directory == null) {
+			return inMemory;
+		}
+		return caches.computeIfAbsent(Paths.get(directory).toAbsolutePath(), DirectoryHashCache::new);
+	}
+
+	/**
+	 * Hash the contents of a file followed by the previous hash.
+	 * @param path the file
+	 * @param previousHash the hex encoded previous hash
+	 * @return the hex encoded SHA3 hash of the file contents followed by previousHash
+	 * @throws IOException
+	 */
+	public String hashFile(Path path, String previousHash) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		String key = path.toAbsolutePath().toString();
+		String stamp = attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+
+		// <stamp>,<previous hash>,<hash>
+		String cached = hashes.getIfPresent(key);
+		if (cached != null) {
+			String[] parts = cached.split(",", -1);
+			if (parts.length == 3 && parts[0].equals(stamp) && parts[1].equals(previousHash)) {
+				return parts[2];
+			}
+		}
+
+		AbsorbedFile absorbed = absorbedFiles.getIfPresent(key);
+		if (absorbed == null || !absorbed.stamp.equals(stamp)) {
+			absorbed = new AbsorbedFile(stamp, absorb(path));
+			absorbedFiles.put(key, absorbed);
+		}
+
+		SHA3Digest digest = new SHA3Digest(absorbed.digest);
+		byte[] previous = previousHash.getBytes();
+		digest.update(previous, 0, previous.length);
+		byte[] hash = new byte[digest.getDigestSize()];
+		digest.doFinal(hash, 0);
+		String hexHash = Hex.toHexString(hash);
+
+		if (System.currentTimeMillis() - attributes.lastModifiedTime().toMillis() < RACY_WINDOW) {
+			// Racily clean: a later write in the same time stamp granularity would go unnoticed
+			absorbedFiles.invalidate(key);
+			hashes.invalidate(key);
+			return hexHash;
+		}
+		hashes.put(key, stamp + "," + previousHash + "," + hexHash);
+		dirty = true;
+		return hexHash;
+	}
+
+	/**
+	 * Save the hashes computed since the last save to the cache directory, if any.
+	 */
+	public synchronized void save() {
+		if (file == null || !dirty) {
+			return;
+		}
+		dirty = false;
+		Path tmp = file.resolveSibling(CACHE_FILE + ".tmp");
+		try {
+			Files.createDirectories(file.getParent());
+			Properties saved = new Properties();
+			saved.putAll(hashes.asMap());
+			try (OutputStream output = Files.newOutputStream(tmp)) {
+				saved.store(output, "");
+			}
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			logger.warn(String.format("Could not save directory hash cache \"%s\", reason:%s", file, e.getMessage()));
+		}
+	}
+
+	private static SHA3Digest absorb(Path path) throws IOException {
+		SHA3Digest digest = new SHA3Digest();
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			while (channel.read(buffer) >= 0) {
+				digest.update(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			}
+		}
+		return digest;
+	}
+
+	private static final class AbsorbedFile {
+		final String stamp;
+		// Must be copied before use
+		final SHA3Digest digest;
+
+		AbsorbedFile(String stamp, SHA3Digest digest) {
+			this.stamp = stamp;
+			this.digest = digest;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip output stream that compresses blocks of its input in parallel, in the way of pigz.
+ * The input is cut into fixed size blocks, each deflated independently on an executor with the end of
+ * the previous block as dictionary, and the compressed blocks are written in order as a single deflate
+ * stream, so the output is a standard gzip stream.
+ * The output only depends on the input, the block size and the compression level, not on the executor.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	// Default size of the blocks compressed in parallel
+	public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+	private static final int MAX_BLOCKS_IN_FLIGHT_PER_THREAD = 2;
+	private static final byte[] GZIP_HEADER = new byte[] {
+			0x1f, (byte) 0x8b,  // magic
+			Deflater.DEFLATED,  // compression method
+			0,                  // flags
+			0, 0, 0, 0,         // modification time, left unset for reproducible output
+			0,                  // extra flags
+			(byte) 0xff         // operating system, unknown
+	};
+
+	private final OutputStream out;
+	private final Executor executor;
+	private final int level;
+	private final int blockSize;
+	private final int maxBlocksInFlight;
+	private final Deque<Future<byte[]>> blocksInFlight = new ArrayDeque<>();
+	private final CRC32 crc = new CRC32();
+	private long inputSize;
+
+	private byte[] block;
+	private int blockLength;
+	private byte[] dictionary;
+	private boolean finished;
+
+	public ParallelGzipOutputStream(OutputStream out) throws IOException {
+		this(out, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	public ParallelGzipOutputStream(OutputStream out, int level) throws IOException {
+		this(out, level, DEFAULT_BLOCK_SIZE, Compressors.executor, Compressors.THREAD_COUNT);
+	}
+
+	/**
+	 * @param out the stream the gzip stream is written to
+	 * @param level the compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param blockSize the size of the blocks compressed in parallel
+	 * @param executor the executor the blocks are compressed on
+	 * @param parallelism the number of threads of the executor, which bounds the blocks buffered in memory
+	 * @throws IOException if the gzip header could not be written
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int level, int blockSize, Executor executor, int parallelism) throws IOException {
+		if (blockSize < DICTIONARY_SIZE) {
+			throw new IllegalArgumentException(String.format("blockSize must be at least %d", DICTIONARY_SIZE));
+		}
+		this.out = out;
+		this.level = level;
+		this.blockSize = blockSize;
+		this.executor = executor;
+		this.maxBlocksInFlight = Math.max(1, parallelism) * MAX_BLOCKS_IN_FLIGHT_PER_THREAD;
+		this.block = new byte[blockSize];
+		out.write(GZIP_HEADER);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (finished) {
+			throw new IOException("Stream is finished");
+		}
+		while (len > 0) {
+			int count = Math.min(len, blockSize - blockLength);
+			System.arraycopy(b, off, block, blockLength, count);
+			blockLength += count;
+			off += count;
+			len -= count;
+			if (blockLength == blockSize) {
+				submitBlock(false);
+			}
+		}
+	}
+
+	/**
+	 * Compress the remaining input and write the gzip trailer, without closing the underlying stream.
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		submitBlock(true);
+		while (!blocksInFlight.isEmpty()) {
+			writeOldestBlock();
+		}
+
+		byte[] trailer = new byte[8];
+		writeIntLE(trailer, 0, (int) crc.getValue());
+		writeIntLE(trailer, 4, (int) inputSize);
+		out.write(trailer);
+		finished = true;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void submitBlock(boolean last) throws IOException {
+		byte[] input = block;
+		int length = blockLength;
+		byte[] inputDictionary = dictionary;
+		crc.update(input, 0, length);
+		inputSize += length;
+
+		if (last && blocksInFlight.isEmpty()) {
+			// Nothing to overlap with
+			blocksInFlight.add(CompletableFuture.completedFuture(deflate(input, length, inputDictionary, true)));
+		} else {
+			blocksInFlight.add(CompletableFuture.supplyAsync(() -> deflate(input, length, inputDictionary, last), executor));
+		}
+		if (length >= DICTIONARY_SIZE) {
+			dictionary = Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length);
+		}
+		block = new byte[blockSize];
+		blockLength = 0;
+
+		while (blocksInFlight.size() > maxBlocksInFlight) {
+			writeOldestBlock();
+		}
+	}
+
+	private void writeOldestBlock() throws IOException {
+		try {
+			out.write(blocksInFlight.poll().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException e) {
+			throw new IOException("Could not compress block", e.getCause());
+		}
+	}
+
+	/**
+	 * Deflate a block as part of a single deflate stream: every block but the last ends with a sync flush,
+	 * which aligns it on a byte boundary without ending the stream, and only the last block is final.
+	 */
+	private byte[] deflate(byte[] input, int length, byte[] inputDictionary, boolean last) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if (inputDictionary != null) {
+				deflater.setDictionary(inputDictionary);
+			}
+			deflater.setInput(input, 0, length);
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+			byte[] buffer = new byte[16 * 1024];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					compressed.write(buffer, 0, deflater.deflate(buffer));
+				}
+			} else {
+				int count;
+				do {
+					count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					compressed.write(buffer, 0, count);
+				} while (count == buffer.length);
+			}
+			return compressed.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void writeIntLE(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >> 8);
+		buffer[offset + 2] = (byte) (value >> 16);
+		buffer[offset + 3] = (byte) (value >> 24);
+	}
+
+	/**
+	 * Lazily started pool of compression threads shared by all streams.
+	 */
+	private static final class Compressors {
+		static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+		static final ExecutorService executor;
+
+		static {
+			AtomicInteger threadCount = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+				Thread thread = new Thread(runnable, "gzip-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+}
@@ -20,27 +20,34 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
-import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.SHA3Digest;
-import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
 
 import com.google.common.io.ByteStreams;
@@ -49,6 +56,8 @@ import com.google.protobuf.Timestamp;
 public class SDKUtil {
 	private static final Log logger = LogFactory.getLog(SDKUtil.class);
 
+	private static final int EXECUTABLE_FILE_MODE = 0100755;
+
 	/**
 	 * Generate parameter hash for the given chain code path,func and args
 	 * @param path Chain code path
@@ -71,7 +80,7 @@ public class SDKUtil {
 	}
 
 	/**
-	 * Generate hash of a chain code directory
+	 * Generate hash of a chain code directory, reading all of its files
 	 * @param rootDir Root directory
 	 * @param chaincodeDir Chain code directory
 	 * @param hash Previous hash (if any)
@@ -79,6 +88,20 @@ public class SDKUtil {
 	 * @throws IOException
 	 */
 	public static String generateDirectoryHash(String rootDir, String chaincodeDir, String hash) throws IOException {
+		return generateDirectoryHash(rootDir, chaincodeDir, hash, new DirectoryHashCache(null));
+	}
+
+	/**
+	 * Generate hash of a chain code directory, without reading again the files found unchanged in the cache
+	 * @param rootDir Root directory
+	 * @param chaincodeDir Chain code directory
+	 * @param hash Previous hash (if any)
+	 * @param cache Cache of file hashes
+	 * @return hash of the directory
+	 * @throws IOException
+	 */
+	public static String generateDirectoryHash(String rootDir, String chaincodeDir, String hash,
+			DirectoryHashCache cache) throws IOException {
 		// Generate the project directory
 		Path projectPath = null;
 		if (rootDir == null) {
@@ -92,27 +115,29 @@ public class SDKUtil {
 			throw new IOException(String.format("The chaincode path \"%s\" is invalid", projectPath));
 		}
 
-		StringBuilder hashBuilder = new StringBuilder(hash);
-		Files.walk(projectPath)
-			.sorted(Comparator.naturalOrder())
-			.filter(Files::isRegularFile)
-			.map(Path::toFile)
-			.forEach(file->{
-				try {
-					byte[] buf = readFile(file);
-					byte[] toHash = Arrays.concatenate(buf, hashBuilder.toString().getBytes());
-					hashBuilder.setLength(0);
-					hashBuilder.append(Hex.toHexString(hash(toHash, new SHA3Digest())));
-				} catch(IOException ex) {
-					throw new RuntimeException(String.format("Error while reading file %s", file.getAbsolutePath()), ex);
-				}
-			});
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(projectPath)) {
+			files = paths.sorted(Comparator.naturalOrder())
+				.filter(Files::isRegularFile)
+				.collect(Collectors.toList());
+		}
+
+		// Each file is hashed followed by the hash of the previous files
+		String directoryHash = hash;
+		for (Path file : files) {
+			try {
+				directoryHash = cache.hashFile(file, directoryHash);
+			} catch(IOException ex) {
+				throw new RuntimeException(String.format("Error while reading file %s", file.toAbsolutePath()), ex);
+			}
+		}
+		cache.save();
 
 		// If original hash and final hash are the same, it indicates that no new contents were found
-		if (hashBuilder.toString().equals(hash)) {
+		if (directoryHash.equals(hash)) {
 			throw new IOException(String.format("The chaincode directory \"%s\" has no files", projectPath));
 		}
-		return hashBuilder.toString();
+		return directoryHash;
 	}
 
 	/**
@@ -122,42 +147,106 @@ public class SDKUtil {
 	 * @throws IOException
 	 */
 	public static void generateTarGz(String src, String target) throws IOException {
-		File sourceDirectory = new File(src);
 		File destinationArchive = new File(target);
+		try (OutputStream destinationOutputStream = new FileOutputStream(destinationArchive)) {
+			generateTarGz(new File(src), destinationOutputStream, Collections.emptyMap(), Deflater.DEFAULT_COMPRESSION,
+					destinationArchive);
+		}
+	}
 
-		String sourcePath = sourceDirectory.getAbsolutePath();
-		FileOutputStream destinationOutputStream = new FileOutputStream(destinationArchive);
+	/**
+	 * Compress the given directory src, plus entries that do not exist on disk, to a tar.gz stream.
+	 * Nothing is written to the source directory, so several archives of the same directory can be
+	 * generated concurrently.
+	 * The archive is reproducible: it only depends on the paths, contents and executable bits of the files.
+	 * @param sourceDirectory The source directory
+	 * @param destination The stream the tar.gz archive is written to. It is not closed.
+	 * @param extraEntries Contents of additional entries, by path relative to the archive root.
+	 * They replace the files of the source directory with the same path.
+	 * @throws IOException
+	 */
+	public static void generateTarGz(File sourceDirectory, OutputStream destination, Map<String, byte[]> extraEntries) throws IOException {
+		generateTarGz(sourceDirectory, destination, extraEntries, Deflater.DEFAULT_COMPRESSION);
+	}
 
-		TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(new GzipCompressorOutputStream(new BufferedOutputStream(destinationOutputStream)));
-		archiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+	/**
+	 * Compress the given directory src, plus entries that do not exist on disk, to a tar.gz stream
+	 * compressed in parallel with the given compression level.
+	 * @param sourceDirectory The source directory
+	 * @param destination The stream the tar.gz archive is written to. It is not closed.
+	 * @param extraEntries Contents of additional entries, by path relative to the archive root.
+	 * @param compressionLevel The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @throws IOException
+	 */
+	public static void generateTarGz(File sourceDirectory, OutputStream destination, Map<String, byte[]> extraEntries,
+			int compressionLevel) throws IOException {
+		generateTarGz(sourceDirectory, destination, extraEntries, compressionLevel, null);
+	}
 
-		try {
-			Collection<File> childrenFiles = org.apache.commons.io.FileUtils.listFiles(sourceDirectory, null, true);
-			childrenFiles.remove(destinationArchive);
+	private static void generateTarGz(File sourceDirectory, OutputStream destination, Map<String, byte[]> extraEntries,
+			int compressionLevel, File excludedFile) throws IOException {
+		// Closing the archive writes the end of the compressed stream, so errors on close are not ignored
+		try (TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(new ParallelGzipOutputStream(
+				new BufferedOutputStream(new CloseShieldOutputStream(destination)), compressionLevel))) {
+			archiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
 
-			ArchiveEntry archiveEntry;
-			FileInputStream fileInputStream;
-			for (File childFile : childrenFiles) {
-				String childPath = childFile.getAbsolutePath();
-				String relativePath = childPath.substring((sourcePath.length() + 1), childPath.length());
+			Map<String, File> files = listArchiveFiles(sourceDirectory);
+			files.values().remove(excludedFile);
+			files.keySet().removeAll(extraEntries.keySet());
+			Set<String> entryNames = new TreeSet<>(files.keySet());
+			entryNames.addAll(extraEntries.keySet());
 
-				relativePath = FilenameUtils.separatorsToUnix(relativePath);
-				archiveEntry = new TarArchiveEntry(childFile, relativePath);
-				fileInputStream = new FileInputStream(childFile);
-				archiveOutputStream.putArchiveEntry(archiveEntry);
+			for (String entryName : entryNames) {
+				File childFile = files.get(entryName);
+				if (childFile == null) {
+					byte[] contents = extraEntries.get(entryName);
+					archiveOutputStream.putArchiveEntry(newTarEntry(entryName, contents.length, false));
+					archiveOutputStream.write(contents);
+					archiveOutputStream.closeArchiveEntry();
+					continue;
+				}
 
-				try {
+				archiveOutputStream.putArchiveEntry(newTarEntry(entryName, childFile.length(), childFile.canExecute()));
+				try (FileInputStream fileInputStream = new FileInputStream(childFile)) {
 					IOUtils.copy(fileInputStream, archiveOutputStream);
-				} finally {
-					IOUtils.closeQuietly(fileInputStream);
-					archiveOutputStream.closeArchiveEntry();
 				}
+				archiveOutputStream.closeArchiveEntry();
 			}
-		} finally {
-			IOUtils.closeQuietly(archiveOutputStream);
+			archiveOutputStream.finish();
 		}
 	}
 
+	/**
+	 * List the files of a directory archived by generateTarGz, sorted by their path relative to the directory,
+	 * so that the archive does not depend on the order files are listed in
+	 * @param sourceDirectory The source directory
+	 * @return the files, by relative path with Unix separators
+	 */
+	static SortedMap<String, File> listArchiveFiles(File sourceDirectory) {
+		String sourcePath = sourceDirectory.getAbsolutePath();
+		SortedMap<String, File> files = new TreeMap<>();
+		for (File childFile : org.apache.commons.io.FileUtils.listFiles(sourceDirectory, null, true)) {
+			String childPath = childFile.getAbsolutePath();
+			String relativePath = childPath.substring((sourcePath.length() + 1), childPath.length());
+			files.put(FilenameUtils.separatorsToUnix(relativePath), childFile);
+		}
+		return files;
+	}
+
+	/**
+	 * Create a tar entry that only depends on the name, size and executable bit of the file, so that
+	 * archives of the same contents are identical whatever the file times, owner and permissions
+	 */
+	private static TarArchiveEntry newTarEntry(String name, long size, boolean executable) {
+		TarArchiveEntry tarEntry = new TarArchiveEntry(name);
+		tarEntry.setSize(size);
+		tarEntry.setMode(executable ? EXECUTABLE_FILE_MODE : TarArchiveEntry.DEFAULT_FILE_MODE);
+		tarEntry.setModTime(0);
+		tarEntry.setIds(0, 0);
+		tarEntry.setNames("", "");
+		return tarEntry;
+	}
+
 	/**
 	 * Read a file and return its contents
 	 * @param input source file to read
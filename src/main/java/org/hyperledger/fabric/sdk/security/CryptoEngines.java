@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk.security;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyFactory;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.SecureRandom;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.spec.ECGenParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.NoSuchPaddingException;
+
+/**
+ * Per-thread pool of crypto engines, keyed by engine type, algorithm and provider.
+ * JCA engines are not thread-safe and are expensive to look up, but they can be reused
+ * by the same thread as long as they are (re)initialized before each use.
+ */
+final class CryptoEngines {
+
+	private static final ThreadLocal<Map<String, Object>> engines = ThreadLocal.withInitial(HashMap::new);
+
+	private CryptoEngines() {}
+
+	/**
+	 * Get a {@link Cipher} resolved through the default provider lookup.
+	 * The caller must call init before using it.
+	 */
+	static Cipher getCipher(String algorithm) throws NoSuchAlgorithmException, NoSuchPaddingException {
+		String key = "Cipher/" + algorithm;
+		Cipher cipher = lookup(key);
+		return cipher != null ? cipher : store(key, Cipher.getInstance(algorithm));
+	}
+
+	/**
+	 * Get a {@link KeyAgreement} from the given provider.
+	 * The caller must call init before using it.
+	 */
+	static KeyAgreement getKeyAgreement(String algorithm, String provider)
+			throws NoSuchAlgorithmException, NoSuchProviderException {
+		String key = "KeyAgreement/" + algorithm + "/" + provider;
+		KeyAgreement keyAgreement = lookup(key);
+		return keyAgreement != null ? keyAgreement : store(key, KeyAgreement.getInstance(algorithm, provider));
+	}
+
+	/**
+	 * Get a {@link KeyFactory}, from the given provider or through the default lookup if provider is null.
+	 */
+	static KeyFactory getKeyFactory(String algorithm, String provider)
+			throws NoSuchAlgorithmException, NoSuchProviderException {
+		String key = "KeyFactory/" + algorithm + "/" + provider;
+		KeyFactory keyFactory = lookup(key);
+		if (keyFactory == null) {
+			keyFactory = store(key, provider == null ? KeyFactory.getInstance(algorithm)
+					: KeyFactory.getInstance(algorithm, provider));
+		}
+		return keyFactory;
+	}
+
+	/**
+	 * Get a {@link CertificateFactory} for the given certificate type.
+	 */
+	static CertificateFactory getCertificateFactory(String type) throws CertificateException {
+		String key = "CertificateFactory/" + type;
+		CertificateFactory certificateFactory = lookup(key);
+		return certificateFactory != null ? certificateFactory : store(key, CertificateFactory.getInstance(type));
+	}
+
+	/**
+	 * Get a {@link KeyPairGenerator} from the given provider, already initialized for the named curve.
+	 */
+	static KeyPairGenerator getKeyPairGenerator(String algorithm, String provider, String curveName)
+			throws NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException {
+		String key = "KeyPairGenerator/" + algorithm + "/" + provider + "/" + curveName;
+		KeyPairGenerator generator = lookup(key);
+		if (generator == null) {
+			generator = KeyPairGenerator.getInstance(algorithm, provider);
+			generator.initialize(new ECGenParameterSpec(curveName), new SecureRandom());
+			store(key, generator);
+		}
+		return generator;
+	}
+
+	/**
+	 * Get a lightweight (BouncyCastle) engine such as a Digest or HMac, creating it with
+	 * factory the first time it is requested on this thread.
+	 * The engine must be left in its reset state after use.
+	 */
+	static <T> T get(Class<T> type, String name, Supplier<T> factory) {
+		String key = type.getSimpleName() + "/" + name;
+		T engine = lookup(key);
+		return engine != null ? engine : store(key, factory.get());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T lookup(String key) {
+		return (T) engines.get().get(key);
+	}
+
+	private static <T> T store(String key, T engine) {
+		engines.get().put(key, engine);
+		return engine;
+	}
+}
@@ -55,11 +55,13 @@ import javax.crypto.spec.SecretKeySpec;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.math.BigInteger;
 import java.security.*;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
 import java.security.interfaces.ECPrivateKey;
-import java.security.spec.ECGenParameterSpec;
 import java.security.spec.EncodedKeySpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
@@ -129,20 +131,24 @@ public class CryptoPrimitives {
     }
 
 	public KeyPair ecdsaKeyGen() throws CryptoException {
-		return generateKey("ECDSA", this.curveName);
+		return generateKey(this.curveName);
 	}
 
     public KeyPair eciesKeyGen() throws CryptoException {
-        return generateKey("ECDSA", this.curveName);
+        return generateKey(this.curveName);
     }
 
-	private KeyPair generateKey(String encryptionName, String curveName) throws CryptoException {
+    /**
+     * Get the pool of pre-generated key pairs used by {@link #ecdsaKeyGen()} and {@link #eciesKeyGen()}
+     * for the curve of the current security level.
+     */
+    public KeyPairPool getKeyPairPool() {
+        return KeyPairPool.getPool(this.curveName);
+    }
+
+	private KeyPair generateKey(String curveName) throws CryptoException {
 		try {
-			ECGenParameterSpec ecGenSpec = new ECGenParameterSpec(curveName);
-			KeyPairGenerator g = KeyPairGenerator.getInstance(encryptionName, SECURITY_PROVIDER);
-			g.initialize(ecGenSpec, new SecureRandom());
-			KeyPair pair = g.generateKeyPair();
-			return pair;
+			return KeyPairPool.getPool(curveName).take();
 		} catch (Exception exp) {
 			throw new CryptoException("Unable to generate key pair", exp);
 		}
@@ -160,19 +166,19 @@ public class CryptoPrimitives {
 
 			// Parsing public key.
 			ECParameterSpec asymmetricKeyParams = generateECParameterSpec();
-			KeyFactory asymmetricKeyFactory = KeyFactory.getInstance(ASYMMETRIC_KEY_TYPE, SECURITY_PROVIDER);
+			KeyFactory asymmetricKeyFactory = CryptoEngines.getKeyFactory(ASYMMETRIC_KEY_TYPE, SECURITY_PROVIDER);
 
 			PublicKey ephemeralPublicKey = asymmetricKeyFactory.generatePublic(new ECPublicKeySpec(
 					asymmetricKeyParams.getCurve().decodePoint(ephemeralPublicKeyBytes), asymmetricKeyParams));
 
 			// Deriving shared secret.
-			KeyAgreement keyAgreement = KeyAgreement.getInstance(KEY_AGREEMENT_ALGORITHM, SECURITY_PROVIDER);
+			KeyAgreement keyAgreement = CryptoEngines.getKeyAgreement(KEY_AGREEMENT_ALGORITHM, SECURITY_PROVIDER);
 			keyAgreement.init(keyPair.getPrivate());
 			keyAgreement.doPhase(ephemeralPublicKey, true);
 			byte[] sharedSecret = keyAgreement.generateSecret();
 
 			// Deriving encryption and mac keys.
-			HKDFBytesGenerator hkdfBytesGenerator = new HKDFBytesGenerator(getHashDigest());
+			HKDFBytesGenerator hkdfBytesGenerator = getHKDFBytesGenerator();
 
 			hkdfBytesGenerator.init(new HKDFParameters(sharedSecret, null, null));
 			byte[] encryptionKey = new byte[SYMMETRIC_KEY_BYTE_COUNT];
@@ -202,7 +208,7 @@ public class CryptoPrimitives {
 
     public byte[] calculateMac(byte[] macKey, byte[] encryptedMessage) throws CryptoException {
         try {
-            HMac hmac = new HMac(getHashDigest());
+            HMac hmac = getHMac();
             hmac.init(new KeyParameter(macKey));
             hmac.update(encryptedMessage, 0, encryptedMessage.length);
             byte[] out = new byte[MAC_KEY_BYTE_COUNT];
@@ -217,7 +223,7 @@ public class CryptoPrimitives {
 			throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
 			InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
 
-		Cipher cipher = Cipher.getInstance(AES_CFB_NO_PADDING_ALGORITHM);
+		Cipher cipher = CryptoEngines.getCipher(AES_CFB_NO_PADDING_ALGORITHM);
 		cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(encryptionKey, SYMMETRIC_KEY_TYPE), new IvParameterSpec(iv));
 		return cipher.doFinal(encryptedMessage);
 
@@ -227,7 +233,7 @@ public class CryptoPrimitives {
             throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
 
-        Cipher cipher = Cipher.getInstance(AES_CFB_NO_PADDING_ALGORITHM);
+        Cipher cipher = CryptoEngines.getCipher(AES_CFB_NO_PADDING_ALGORITHM);
         cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(encryptionKey, SYMMETRIC_KEY_TYPE), new IvParameterSpec(iv));
         return cipher.doFinal(message);
     }
@@ -258,17 +264,31 @@ public class CryptoPrimitives {
     }
 
     public byte[] eciesEncrypt(PublicKey publicKey, byte[] data) throws CryptoException {
+        return eciesEncryptAll(publicKey, data)[0];
+    }
+
+    /**
+     * Encrypt several messages for the same public key. A single ephemeral key pair, key agreement
+     * and key derivation are shared by all messages, each message getting its own IV and tag.
+     * Every ciphertext has the same layout as the one returned by {@link #eciesEncrypt(PublicKey, byte[])}
+     * and can be decrypted on its own.
+     * @param publicKey the recipient public key
+     * @param messages the messages to encrypt
+     * @return the ciphertexts, in the same order as the messages
+     * @throws CryptoException
+     */
+    public byte[][] eciesEncryptAll(PublicKey publicKey, byte[]... messages) throws CryptoException {
         try {
             KeyPair keyPair = ecdsaKeyGen();
 
             // Deriving shared secret.
-            KeyAgreement keyAgreement = KeyAgreement.getInstance(KEY_AGREEMENT_ALGORITHM, SECURITY_PROVIDER);
+            KeyAgreement keyAgreement = CryptoEngines.getKeyAgreement(KEY_AGREEMENT_ALGORITHM, SECURITY_PROVIDER);
             keyAgreement.init(keyPair.getPrivate());
             keyAgreement.doPhase(publicKey, true);
             byte[] sharedSecret = keyAgreement.generateSecret();
 
             // Deriving encryption and mac keys.
-            HKDFBytesGenerator hkdfBytesGenerator = new HKDFBytesGenerator(getHashDigest());
+            HKDFBytesGenerator hkdfBytesGenerator = getHKDFBytesGenerator();
 
             hkdfBytesGenerator.init(new HKDFParameters(sharedSecret, null, null));
             byte[] encryptionKey = new byte[SYMMETRIC_KEY_BYTE_COUNT];
@@ -277,21 +297,27 @@ public class CryptoPrimitives {
             byte[] macKey = new byte[MAC_KEY_BYTE_COUNT];
             hkdfBytesGenerator.generateBytes(macKey, 0, MAC_KEY_BYTE_COUNT);
 
-            byte[] iv = generateIV();
-            byte[] encryptedMessage = aesEncrypt(encryptionKey, iv, data);
+            byte[] Rb = ((BCECPublicKey) keyPair.getPublic()).engineGetQ().getEncoded(false);
 
-            encryptedMessage = Arrays.concatenate(iv, encryptedMessage);
+            byte[][] ciphertexts = new byte[messages.length][];
+            for (int i = 0; i < messages.length; i++) {
+                byte[] iv = generateIV();
+                byte[] encryptedMessage = aesEncrypt(encryptionKey, iv, messages[i]);
 
-            byte[] tag = calculateMac(macKey, encryptedMessage);
+                encryptedMessage = Arrays.concatenate(iv, encryptedMessage);
 
-            byte[] Rb = ((BCECPublicKey) keyPair.getPublic()).engineGetQ().getEncoded(false);
-            byte[] ciphertext = new byte[Rb.length + encryptedMessage.length + tag.length];
+                byte[] tag = calculateMac(macKey, encryptedMessage);
+
+                byte[] ciphertext = new byte[Rb.length + encryptedMessage.length + tag.length];
 
-            System.arraycopy(Rb, 0, ciphertext, 0, Rb.length);
-            System.arraycopy(encryptedMessage, 0, ciphertext, Rb.length, encryptedMessage.length);
-            System.arraycopy(tag, 0, ciphertext, Rb.length + encryptedMessage.length, tag.length);
+                System.arraycopy(Rb, 0, ciphertext, 0, Rb.length);
+                System.arraycopy(encryptedMessage, 0, ciphertext, Rb.length, encryptedMessage.length);
+                System.arraycopy(tag, 0, ciphertext, Rb.length + encryptedMessage.length, tag.length);
 
-            return ciphertext;
+                ciphertexts[i] = ciphertext;
+            }
+
+            return ciphertexts;
         } catch (Exception e) {
             throw new CryptoException("Could not encrypt the message", e);
         }
@@ -309,7 +335,7 @@ public class CryptoPrimitives {
     public PrivateKey ecdsaKeyFromPrivate(byte[] key) throws CryptoException {
 		try {
 			EncodedKeySpec privateKeySpec = new PKCS8EncodedKeySpec(key);
-			KeyFactory generator = KeyFactory.getInstance("ECDSA", SECURITY_PROVIDER);
+			KeyFactory generator = CryptoEngines.getKeyFactory("ECDSA", SECURITY_PROVIDER);
 			PrivateKey privateKey = generator.generatePrivate(privateKeySpec);
 
 			return privateKey;
@@ -324,9 +350,9 @@ public class CryptoPrimitives {
                 ecCurve.getCurve(), ecCurve.getG(), ecCurve.getN(), ecCurve.getH(), ecCurve.getSeed());
         java.security.spec.ECPrivateKeySpec privateKeySpec = new java.security.spec.ECPrivateKeySpec(s, ecParameterSpec);
         try {
-            KeyFactory keyFactory = KeyFactory.getInstance("ECDSA");
+            KeyFactory keyFactory = CryptoEngines.getKeyFactory("ECDSA", null);
             return keyFactory.generatePrivate(privateKeySpec);
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeySpecException e) {
             throw new CryptoException("Unable to convert bigint to PrivateKey", e);
         }
     }
@@ -354,9 +380,32 @@ public class CryptoPrimitives {
 			this.curveName = "secp384r1";
 			//TODO: HashOutputSize=48 ?
 		}
+		// Start generating key pairs ahead of the first enrollment
+		KeyPairPool.getPool(this.curveName);
 	}
 
+    /**
+     * Get this thread's instance of the hash digest for the current hash algorithm and security level.
+     * The digest is reset after each doFinal, so it can be reused by subsequent calls.
+     */
     private Digest getHashDigest() {
+        return CryptoEngines.get(Digest.class, getHashDigestName(), this::newHashDigest);
+    }
+
+    private HMac getHMac() {
+        return CryptoEngines.get(HMac.class, getHashDigestName(), () -> new HMac(newHashDigest()));
+    }
+
+    private HKDFBytesGenerator getHKDFBytesGenerator() {
+        return CryptoEngines.get(HKDFBytesGenerator.class, getHashDigestName(),
+                () -> new HKDFBytesGenerator(newHashDigest()));
+    }
+
+    private String getHashDigestName() {
+        return this.hashAlgorithm.toUpperCase() + "-" + this.securityLevel;
+    }
+
+    private Digest newHashDigest() {
         if (this.hashAlgorithm.equalsIgnoreCase("SHA3")) {
             return new SHA3Digest(this.securityLevel);
         } else if (this.hashAlgorithm.equalsIgnoreCase("SHA2")) {
@@ -373,14 +422,27 @@ public class CryptoPrimitives {
     public byte[] aesCBCPKCS7Decrypt(byte[] key, byte[] bytes) throws InvalidAlgorithmParameterException, InvalidKeyException, NoSuchPaddingException, NoSuchAlgorithmException, BadPaddingException, IllegalBlockSizeException {
         byte[] iv = Arrays.copyOfRange(bytes, 0, BLOCK_SIZE);
 
-        Cipher cipher = Cipher.getInstance(AES_CBC_PKCS7PADDING_ALGORITHM);
+        Cipher cipher = CryptoEngines.getCipher(AES_CBC_PKCS7PADDING_ALGORITHM);
         cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, SYMMETRIC_KEY_TYPE), new IvParameterSpec(iv));
         return cipher.doFinal(bytes, BLOCK_SIZE, bytes.length - BLOCK_SIZE);
     }
 
+    public byte[] aes256GCMEncrypt(byte[] key, byte[] bytes) throws CryptoException {
+        try {
+            byte[] iv = new byte[AES_GCM_IV_BYTE_COUNT];
+            random.nextBytes(iv);
+            Cipher cipher = CryptoEngines.getCipher(AES_GCM_NO_PADDING_ALGORITHM);
+            GCMParameterSpec params = new GCMParameterSpec(AES_GCM_TAG_BYTE_COUNT * 8, iv);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, SYMMETRIC_KEY_TYPE), params);
+            return Arrays.concatenate(iv, cipher.doFinal(bytes));
+        } catch (Exception e) {
+            throw new CryptoException("Unable to encrypt with AES GCM", e);
+        }
+    }
+
     public byte[] aes256GCMDecrypt(byte[] key, byte[] bytes) throws CryptoException {
         try {
-            Cipher cipher = Cipher.getInstance(AES_GCM_NO_PADDING_ALGORITHM);
+            Cipher cipher = CryptoEngines.getCipher(AES_GCM_NO_PADDING_ALGORITHM);
             GCMParameterSpec params = new GCMParameterSpec(AES_GCM_TAG_BYTE_COUNT * 8, bytes, 0, AES_GCM_IV_BYTE_COUNT);
             cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, SYMMETRIC_KEY_TYPE), params);
             return cipher.doFinal(bytes, AES_GCM_IV_BYTE_COUNT, bytes.length - AES_GCM_IV_BYTE_COUNT);
@@ -400,13 +462,21 @@ public class CryptoPrimitives {
             PemObject chainKeyPemObj = pemReader.readPemObject();
 
             X509EncodedKeySpec spec = new X509EncodedKeySpec(chainKeyPemObj.getContent());
-            KeyFactory kf = KeyFactory.getInstance("ECDSA");
+            KeyFactory kf = CryptoEngines.getKeyFactory("ECDSA", null);
             return kf.generatePublic(spec);
         } catch (Exception e) {
             throw new CryptoException("Unable to parse PublicKey from chainKey", e);
         }
     }
 
+    public X509Certificate bytesToCertificate(InputStream certBytes) throws CryptoException {
+        try {
+            return (X509Certificate) CryptoEngines.getCertificateFactory("X.509").generateCertificate(certBytes);
+        } catch (CertificateException e) {
+            throw new CryptoException("Unable to parse X.509 certificate", e);
+        }
+    }
+
     public byte[] hash(byte[] data) {
 		return SDKUtil.hash(data, getHashDigest());
 	}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.hyperledger.fabric.sdk.security;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Pool of EC key pairs generated ahead of time for a named curve.
+ * The pool starts filling up to its depth when it is created, and is refilled by a low priority background
+ * thread whenever a key pair is taken, so that latency-critical paths such as enrollment or confidential transactions skip key generation.
+ * If the pool is empty, the key pair is generated by the calling thread.
+ */
+public final class KeyPairPool {
+	private static final Log logger = LogFactory.getLog(KeyPairPool.class);
+
+	// Default number of key pairs kept ready per curve
+	public static final int DEFAULT_DEPTH = 8;
+
+	private static final String KEY_PAIR_ALGORITHM = "ECDSA";
+	private static final String SECURITY_PROVIDER = BouncyCastleProvider.PROVIDER_NAME;
+
+	private static final ConcurrentHashMap<String, KeyPairPool> pools = new ConcurrentHashMap<>();
+
+	private final String curveName;
+	private final Queue<KeyPair> keyPairs = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicBoolean filling = new AtomicBoolean();
+	private volatile int depth = DEFAULT_DEPTH;
+
+	private KeyPairPool(String curveName) {
+		this.curveName = curveName;
+	}
+
+	/**
+	 * Get the pool of key pairs for the named curve, creating it and starting to fill it on first use.
+	 * @param curveName the name of the curve, e.g. secp256r1
+	 * @return the pool, shared by all users of the curve
+	 */
+	public static KeyPairPool getPool(String curveName) {
+		KeyPairPool pool = pools.get(curveName);
+		if (pool == null) {
+			KeyPairPool created = new KeyPairPool(curveName);
+			pool = pools.putIfAbsent(curveName, created);
+			if (pool == null) {
+				pool = created;
+				pool.refill();
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Take a key pair from the pool, or generate one if the pool is empty.
+	 * Each key pair is handed out only once.
+	 * @return a new key pair
+	 * @throws GeneralSecurityException if the key pair could not be generated
+	 */
+	public KeyPair take() throws GeneralSecurityException {
+		KeyPair keyPair = keyPairs.poll();
+		if (keyPair != null) {
+			size.decrementAndGet();
+		}
+		refill();
+		return keyPair != null ? keyPair : generate();
+	}
+
+	/**
+	 * Get the number of key pairs kept ready by this pool.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Set the number of key pairs kept ready by this pool. A depth of 0 disables pooling.
+	 * Key pairs above the new depth are discarded.
+	 * @param depth the number of key pairs to keep ready
+	 */
+	public void setDepth(int depth) {
+		if (depth < 0) {
+			throw new IllegalArgumentException("depth must not be negative");
+		}
+		this.depth = depth;
+		trim();
+	}
+
+	/**
+	 * Start filling the pool in the background, e.g. after raising its depth.
+	 */
+	public void prefill() {
+		refill();
+	}
+
+	/**
+	 * Get the number of key pairs currently ready.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	private void refill() {
+		if (size.get() >= depth || !filling.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			Filler.executor.execute(this::fill);
+		} catch (RejectedExecutionException e) {
+			filling.set(false);
+		}
+	}
+
+	private void fill() {
+		try {
+			while (size.get() < depth) {
+				keyPairs.add(generate());
+				size.incrementAndGet();
+				// The depth may have been lowered while the key pair was generated
+				trim();
+			}
+		} catch (GeneralSecurityException e) {
+			logger.debug(String.format("Could not pre-generate key pair for curve %s", curveName), e);
+			return;
+		} finally {
+			filling.set(false);
+		}
+		// A key pair may have been taken after the last check
+		refill();
+	}
+
+	private void trim() {
+		while (size.get() > depth && keyPairs.poll() != null) {
+			size.decrementAndGet();
+		}
+	}
+
+	private KeyPair generate() throws GeneralSecurityException {
+		return CryptoEngines.getKeyPairGenerator(KEY_PAIR_ALGORITHM, SECURITY_PROVIDER, curveName).generateKeyPair();
+	}
+
+	/**
+	 * Lazily started background thread shared by all pools.
+	 */
+	private static final class Filler {
+		static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "keypair-pool");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	}
+}
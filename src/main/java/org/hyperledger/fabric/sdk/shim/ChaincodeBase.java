@@ -37,6 +37,13 @@ import org.hyperledger.protos.ChaincodeSupportGrpc.ChaincodeSupportStub;
 
 import javax.net.ssl.SSLException;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class ChaincodeBase {
 
@@ -55,6 +62,19 @@ public abstract class ChaincodeBase {
 	private static final String ROOTCERT_PEM = "/root/certs/rootcert.pem";
 	private boolean tlsEnabled=false;
 
+	// Default bounds of the pool of threads running init, transactions and queries
+	public static final int DEFAULT_MAX_WORKER_THREADS = 32;
+	public static final int DEFAULT_MAX_QUEUED_REQUESTS = 1000;
+	// Default number of state requests of a transaction or query sent to the peer before a response arrives
+	public static final int DEFAULT_MAX_PENDING_STATE_REQUESTS = 1;
+
+	private int maxWorkerThreads = DEFAULT_MAX_WORKER_THREADS;
+	private int maxQueuedRequests = DEFAULT_MAX_QUEUED_REQUESTS;
+	private int maxPendingStateRequests = DEFAULT_MAX_PENDING_STATE_REQUESTS;
+	private boolean stateOverlay;
+	private final TableSchemaCache tableSchemaCache = new TableSchemaCache();
+	private ExecutorService executor;
+
 	private Handler handler;
 	private String id = getChaincodeID();
 
@@ -138,7 +158,7 @@ public abstract class ChaincodeBase {
 							try {
 								logger.debug(String.format("[%s]Received message %s from org.hyperledger.fabric.java.shim",
 										Handler.shortID(message.getTxid()), message.getType()));
-								handler.handleMessage(message);
+								handler.receiveMessage(message);
 							} catch (Exception e) {
 								logger.error(e.getMessage());
 								e.printStackTrace();
@@ -200,6 +220,108 @@ public abstract class ChaincodeBase {
 		}
 	}
 
+	/**
+	 * Get the executor on which init, transactions and queries are run.
+	 * Unless one was set, a pool of at most maxWorkerThreads daemon threads is created on first use,
+	 * which rejects requests once maxQueuedRequests are waiting for a thread.
+	 * A rejected query is answered with QUERY_ERROR, and a rejected transaction with ERROR. Transactions share
+	 * the queue with queries, so a burst of queries filling it makes the transactions arriving meanwhile fail.
+	 * @return the worker executor
+	 */
+	public synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(maxWorkerThreads, maxWorkerThreads,
+					60, TimeUnit.SECONDS,
+					maxQueuedRequests > 0 ? new ArrayBlockingQueue<>(maxQueuedRequests) : new SynchronousQueue<>(),
+					runnable -> {
+						Thread thread = new Thread(runnable, "chaincode-worker-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					},
+					new ThreadPoolExecutor.AbortPolicy());
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Set the executor on which init, transactions and queries are run.
+	 * @param executor worker executor
+	 */
+	public synchronized void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public int getMaxWorkerThreads() {
+		return maxWorkerThreads;
+	}
+
+	/**
+	 * Set the maximum number of threads of the default worker executor. Must be called before it is created.
+	 * @param maxWorkerThreads maximum number of worker threads
+	 * @throws IllegalStateException if the worker executor was already created or set
+	 */
+	public synchronized void setMaxWorkerThreads(int maxWorkerThreads) {
+		checkExecutorNotCreated();
+		this.maxWorkerThreads = maxWorkerThreads;
+	}
+
+	public int getMaxQueuedRequests() {
+		return maxQueuedRequests;
+	}
+
+	/**
+	 * Set the maximum number of requests waiting for a thread of the default worker executor.
+	 * Must be called before it is created.
+	 * @param maxQueuedRequests maximum number of queued requests, 0 to reject requests when all threads are busy
+	 * @throws IllegalStateException if the worker executor was already created or set
+	 */
+	public synchronized void setMaxQueuedRequests(int maxQueuedRequests) {
+		checkExecutorNotCreated();
+		this.maxQueuedRequests = maxQueuedRequests;
+	}
+
+	private void checkExecutorNotCreated() {
+		if (executor != null) {
+			throw new IllegalStateException("The worker executor was already created");
+		}
+	}
+
+	public int getMaxPendingStateRequests() {
+		return maxPendingStateRequests;
+	}
+
+	/**
+	 * Set the number of state requests of a transaction or query sent to the peer before a response arrives.
+	 * Further requests, such as those of {@link ChaincodeStub#getStates(List)}, wait and are sent as
+	 * responses arrive. Responses are matched to requests in order, so a value above 1 is only safe with a
+	 * peer that accepts concurrent requests for a transaction and answers them in order.
+	 * @param maxPendingStateRequests maximum number of outstanding state requests per transaction or query
+	 */
+	public void setMaxPendingStateRequests(int maxPendingStateRequests) {
+		this.maxPendingStateRequests = maxPendingStateRequests;
+	}
+
+	public boolean isStateOverlay() {
+		return stateOverlay;
+	}
+
+	/**
+	 * Set whether the stubs of transactions and queries keep a local overlay of the state: values read are
+	 * cached, and writes are buffered, visible to later reads of the same transaction, and sent to the peer
+	 * together before the transaction completes.
+	 * @param stateOverlay true to keep a state overlay per transaction
+	 */
+	public void setStateOverlay(boolean stateOverlay) {
+		this.stateOverlay = stateOverlay;
+	}
+
+	TableSchemaCache getTableSchemaCache() {
+		return tableSchemaCache;
+	}
+
 	public ByteString runRaw(ChaincodeStub stub, String function, String[] args) {
 		return null;
 	}
@@ -26,9 +26,20 @@ import org.hyperledger.protos.TableProto;
 import org.hyperledger.protos.TableProto.Table;
 import org.hyperledger.fabric.sdk.shim.crypto.signature.EcdsaSignatureVerifier;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.hyperledger.protos.TableProto.ColumnDefinition.Type.STRING;
 
@@ -37,11 +48,29 @@ public class ChaincodeStub {
     private final String uuid;
     private final Handler handler;
     private final ChaincodeSecurityContext securityContext;
+    // Values of the state read or written by this transaction, when it keeps a state overlay
+    private final Map<String, ByteString> overlay;
+    // Writes not yet sent to the validator, in order, with null for a deletion
+    private final Map<String, ByteString> bufferedWrites = new LinkedHashMap<>();
+    // Tables created or deleted by this transaction, whose definitions are not shared until it commits
+    private final Set<String> changedTables = new HashSet<>();
 
     public ChaincodeStub(String uuid, Handler handler, ChaincodeSecurityContext securityContext) {
+        this(uuid, handler, securityContext, false);
+    }
+
+    /**
+     * @param uuid the id of the transaction or query
+     * @param handler the handler communicating with the validator
+     * @param securityContext the security context of the transaction or query
+     * @param stateOverlay whether reads are cached and writes buffered until {@link #flush()}
+     */
+    public ChaincodeStub(String uuid, Handler handler, ChaincodeSecurityContext securityContext, boolean stateOverlay) {
         this.uuid = uuid;
         this.handler = handler;
         this.securityContext = securityContext;
+        // Completed asynchronous reads fill it from the thread receiving messages from the validator
+        this.overlay = stateOverlay ? new ConcurrentHashMap<>() : null;
     }
 
     /**
@@ -60,7 +89,36 @@ public class ChaincodeStub {
      * @return the String value of the requested state
      */
     public String getState(String key) {
-        return handler.handleGetState(key, uuid).toStringUtf8();
+        return getRawState(key).toStringUtf8();
+    }
+
+    /**
+     * Get the state of the provided key from the ledger without waiting for it
+     *
+     * @param key the key of the desired state
+     * @return the future String value of the requested state
+     */
+    public CompletableFuture<String> getStateAsync(String key) {
+        return getRawStateAsync(key).thenApply(ByteString::toStringUtf8);
+    }
+
+    /**
+     * Get the states of the provided keys from the ledger. All the requests are issued before any
+     * response is awaited, and duplicate keys are read once. How many requests are outstanding at the
+     * validator at once is set by {@link ChaincodeBase#setMaxPendingStateRequests(int)}: with the default
+     * of 1, each key still costs a round trip, but the next request is sent as soon as a response arrives,
+     * without waking up the chaincode. If a request fails, all of them are awaited before the first
+     * error is thrown.
+     *
+     * @param keys the keys of the desired states
+     * @return the String values of the requested states, by key in the order of keys
+     */
+    public Map<String, String> getStates(List<String> keys) {
+        Map<String, String> states = new LinkedHashMap<>();
+        for (Map.Entry<String, ByteString> state : getRawStates(keys).entrySet()) {
+            states.put(state.getKey(), state.getValue().toStringUtf8());
+        }
+        return states;
     }
 
     /**
@@ -70,7 +128,7 @@ public class ChaincodeStub {
      * @param value value to be put
      */
     public void putState(String key, String value) {
-        handler.handlePutState(key, ByteString.copyFromUtf8(value), uuid);
+        putRawState(key, ByteString.copyFromUtf8(value));
     }
 
     /**
@@ -79,18 +137,54 @@ public class ChaincodeStub {
      * @param key key of the state to be deleted
      */
     public void delState(String key) {
-        handler.handleDeleteState(key, uuid);
+        if (overlay == null) {
+            handler.handleDeleteState(key, uuid);
+            return;
+        }
+        checkWritable();
+        overlay.put(key, ByteString.EMPTY);
+        bufferedWrites.put(key, null);
+    }
+
+    /**
+     * Send the writes buffered by the state overlay to the validator, all of them before awaiting any
+     * acknowledgement. This is done before the transaction completes, and before range queries and
+     * chaincode invocations, which must see the writes.
+     * If writes fail, the first error is thrown once all of them are acknowledged.
+     */
+    public void flush() {
+        if (bufferedWrites.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Void>> writes = new ArrayList<>(bufferedWrites.size());
+        for (Map.Entry<String, ByteString> write : bufferedWrites.entrySet()) {
+            if (write.getValue() == null) {
+                writes.add(handler.handleDeleteStateAsync(write.getKey(), uuid));
+            } else {
+                writes.add(handler.handlePutStateAsync(write.getKey(), write.getValue(), uuid));
+            }
+        }
+        bufferedWrites.clear();
+        joinAll(writes);
+    }
+
+    private void checkWritable() {
+        // Writes are refused on queries when they are made, not when they are flushed
+        if (!handler.isTransaction(uuid)) {
+            throw new IllegalStateException("Cannot put state in query context");
+        }
     }
 
     /**
-     * Given a start key and end key, this method returns a map of items with value converted to UTF-8 string.
+     * Given a start key and end key, this method returns a map of items with value converted to UTF-8 string,
+     * in key order.
      *
      * @param startKey
      * @param endKey
      * @return
      */
     public Map<String, String> rangeQueryState(String startKey, String endKey) {
-        Map<String, String> retMap = new HashMap<>();
+        Map<String, String> retMap = new LinkedHashMap<>();
         for (Map.Entry<String, ByteString> item : rangeQueryRawState(startKey, endKey).entrySet()) {
             retMap.put(item.getKey(), item.getValue().toStringUtf8());
         }
@@ -106,14 +200,44 @@ public class ChaincodeStub {
      * @return
      */
     public Map<String, ByteString> rangeQueryRawState(String startKey, String endKey) {
-        Map<String, ByteString> map = new HashMap<>();
-        for (Chaincode.RangeQueryStateKeyValue mapping : handler.handleRangeQueryState(
-                startKey, endKey, uuid).getKeysAndValuesList()) {
-            map.put(mapping.getKey(), mapping.getValue());
+        Map<String, ByteString> map = new LinkedHashMap<>();
+        try (RangeQueryIterator iterator = rangeQueryIterator(startKey, endKey)) {
+            while (iterator.hasNext()) {
+                Chaincode.RangeQueryStateKeyValue mapping = iterator.next();
+                map.put(mapping.getKey(), mapping.getValue());
+            }
         }
         return map;
     }
 
+    /**
+     * Given a start key and end key, this method returns an iterator over the items of the range in key
+     * order, which fetches them from the ledger one page at a time as it is consumed.
+     * It must be closed if it is not consumed to the end.
+     *
+     * @param startKey
+     * @param endKey
+     * @return iterator over the items of the range
+     */
+    public RangeQueryIterator rangeQueryIterator(String startKey, String endKey) {
+        flush();
+        return new RangeQueryIterator(handler, uuid, startKey, endKey);
+    }
+
+    /**
+     * Same as rangeQueryIterator, as a sequential stream, which must be closed if it is not consumed to the end.
+     *
+     * @param startKey
+     * @param endKey
+     * @return stream of the items of the range
+     */
+    public Stream<Chaincode.RangeQueryStateKeyValue> rangeQueryStream(String startKey, String endKey) {
+        RangeQueryIterator iterator = rangeQueryIterator(startKey, endKey);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
     /**
      * @param chaincodeName
      * @param function
@@ -121,6 +245,7 @@ public class ChaincodeStub {
      * @return
      */
     public String invokeChaincode(String chaincodeName, String function, List<ByteString> args) {
+        flush();
         return handler.handleInvokeChaincode(chaincodeName, function, args, uuid).toStringUtf8();
     }
 
@@ -131,6 +256,7 @@ public class ChaincodeStub {
      * @return
      */
     public String queryChaincode(String chaincodeName, String function, List<ByteString> args) {
+        flush();
         return handler.handleQueryChaincode(chaincodeName, function, args, uuid).toStringUtf8();
     }
 
@@ -141,7 +267,84 @@ public class ChaincodeStub {
      * @return
      */
     public ByteString getRawState(String key) {
-        return handler.handleGetState(key, uuid);
+        if (overlay == null) {
+            return handler.handleGetState(key, uuid);
+        }
+        ByteString value = overlay.get(key);
+        if (value == null) {
+            value = handler.handleGetState(key, uuid);
+            ByteString written = overlay.putIfAbsent(key, value);
+            if (written != null) {
+                value = written;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @param key
+     * @return the future value of the state
+     */
+    public CompletableFuture<ByteString> getRawStateAsync(String key) {
+        if (overlay == null) {
+            return handler.handleGetStateAsync(key, uuid);
+        }
+        ByteString value = overlay.get(key);
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        // A value written while the read is outstanding wins over the value read
+        return handler.handleGetStateAsync(key, uuid).thenApply(read -> {
+            ByteString written = overlay.putIfAbsent(key, read);
+            return written != null ? written : read;
+        });
+    }
+
+    /**
+     * Same as getStates, except it returns values in ByteString.
+     *
+     * @param keys
+     * @return the values of the states, by key in the order of keys
+     */
+    public Map<String, ByteString> getRawStates(List<String> keys) {
+        Map<String, CompletableFuture<ByteString>> requests = new LinkedHashMap<>();
+        for (String key : keys) {
+            requests.computeIfAbsent(key, this::getRawStateAsync);
+        }
+        joinAll(requests.values());
+        Map<String, ByteString> states = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<ByteString>> request : requests.entrySet()) {
+            states.put(request.getKey(), request.getValue().join());
+        }
+        return states;
+    }
+
+    /**
+     * Wait for all the futures, then throw the error of the first one that failed, if any, so that no
+     * request is left outstanding when an error is thrown.
+     */
+    private static void joinAll(Collection<? extends CompletableFuture<?>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+        } catch (CompletionException e) {
+            for (CompletableFuture<?> future : futures) {
+                if (future.isCompletedExceptionally()) {
+                    join(future);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -149,7 +352,13 @@ public class ChaincodeStub {
      * @param value
      */
     public void putRawState(String key, ByteString value) {
-        handler.handlePutState(key, value, uuid);
+        if (overlay == null) {
+            handler.handlePutState(key, value, uuid);
+            return;
+        }
+        checkWritable();
+        overlay.put(key, value);
+        bufferedWrites.put(key, value);
     }
 
     /**
@@ -170,6 +379,7 @@ public class ChaincodeStub {
      * @return
      */
     public ByteString queryRawChaincode(String chaincodeName, String function, List<ByteString> args) {
+        flush();
         return handler.handleQueryChaincode(chaincodeName, function, args, uuid);
     }
 
@@ -183,6 +393,7 @@ public class ChaincodeStub {
      * @return the value returned by the chaincode call
      */
     public ByteString invokeRawChaincode(String chaincodeName, String function, List<ByteString> args) {
+        flush();
         return handler.handleInvokeChaincode(chaincodeName, function, args, uuid);
     }
 
@@ -250,6 +461,7 @@ public class ChaincodeStub {
                         .addAllColumnDefinitions(columnDefinitions)
                         .build();
                 String tableNameKey = getTableNameKey(tableName);
+                changeTable(tableName);
                 putRawState(tableNameKey, table.toByteString());
                 return true;
             }
@@ -258,6 +470,7 @@ public class ChaincodeStub {
     }
     public boolean deleteTable(String tableName) {
         String tableNameKey = getTableNameKey(tableName);
+        changeTable(tableName);
         rangeQueryState(tableNameKey + "1", tableNameKey + ":")
                 .keySet().forEach(key -> delState(key));
         delState(tableNameKey);
@@ -452,12 +665,36 @@ public class ChaincodeStub {
     }
 
     private TableProto.Table getTable(String tableName) throws Exception {
-logger.info("Inside get tbale");
+        TableSchemaCache cache = handler.getChaincode().getTableSchemaCache();
+        boolean shared = !changedTables.contains(tableName);
+        if (shared) {
+            TableProto.Table table = cache.get(tableName);
+            if (table != null) {
+                return table;
+            }
+        }
+
+        long generation = cache.generation();
         String tName = getTableNameKey(tableName);
         logger.debug("Table name key for getRawState - " + tName);
         ByteString tableBytes = getRawState(tName);
         logger.debug("Table after getrawState -" + tableBytes);
-        return TableProto.Table.parseFrom(tableBytes);
+        TableProto.Table table = TableProto.Table.parseFrom(tableBytes);
+        // Queries read the committed state, which may not include the table changes of transactions
+        // already executed, so only transactions share the definitions they read
+        if (shared && table.getName().equals(tableName) && handler.isTransaction(uuid)) {
+            cache.put(table, generation);
+        }
+        return table;
+    }
+
+    /**
+     * Invalidate the shared definition of a table created or deleted by this transaction, which
+     * may still fail.
+     */
+    private void changeTable(String tableName) {
+        changedTables.add(tableName);
+        handler.getChaincode().getTableSchemaCache().invalidate(tableName);
     }
 
     private boolean tableExist(String tableName) throws Exception {
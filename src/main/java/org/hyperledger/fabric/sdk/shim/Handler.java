@@ -29,9 +29,15 @@ import org.hyperledger.fabric.sdk.shim.fsm.exceptions.NoTransitionException;
 import org.hyperledger.protos.Chaincode.*;
 import org.hyperledger.protos.Chaincode.ChaincodeMessage.Builder;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.hyperledger.protos.Chaincode.ChaincodeMessage.Type.*;
 
@@ -43,17 +49,21 @@ public class Handler {
 	private ChaincodeBase chaincode;
 
 	private Map<String, Boolean> isTransaction;
-	private Map<String, Channel<ChaincodeMessage>> responseChannel;
+	// Outstanding requests to the validator, by uuid
+	private final Map<String, RequestPipeline> requests = new ConcurrentHashMap<>();
 	public Channel<NextStateInfo> nextState;
 
+	// The stream observer is not thread safe, sends are serialized on their own lock
+	private final Object sendLock = new Object();
+	// State transitions are serialized, message routing by txid takes no lock
+	private final Object fsmLock = new Object();
 	private FSM fsm;
 
 	public Handler(StreamObserver<ChaincodeMessage> chatStream, ChaincodeBase chaincode) {
 		this.chatStream = chatStream;
 		this.chaincode = chaincode;
 
-		responseChannel = new HashMap<String, Channel<ChaincodeMessage>>();
-		isTransaction = new HashMap<String, Boolean>();
+		isTransaction = new ConcurrentHashMap<String, Boolean>();
 		nextState = new Channel<NextStateInfo>();
 
 		fsm = new FSM("created");
@@ -78,7 +88,6 @@ public class Handler {
 		fsm.addCallbacks(
 				//			Type			Trigger					Callback
 				new CBDesc(CallbackType.BEFORE_EVENT,	REGISTERED.toString(), 	(event) -> beforeRegistered(event)),
-				new CBDesc(CallbackType.AFTER_EVENT, 	RESPONSE.toString(), 	(event) -> afterResponse(event)),
 				new CBDesc(CallbackType.AFTER_EVENT, 	ERROR.toString(), 		(event) -> afterError(event)),
 				new CBDesc(CallbackType.ENTER_STATE, 	"init", 				(event) -> enterInitState(event)),
 				new CBDesc(CallbackType.ENTER_STATE, 	"transaction", 			(event) -> enterTransactionState(event)),
@@ -86,6 +95,10 @@ public class Handler {
 				);
 	}
 
+	ChaincodeBase getChaincode() {
+		return chaincode;
+	}
+
 	public static String shortID(String uuid) {
 		if (uuid.length() < 8) {
 			return uuid;
@@ -99,9 +112,11 @@ public class Handler {
 		nextState.add(new NextStateInfo(message, send));
 	}
 
-	public synchronized void serialSend(ChaincodeMessage message) {
+	public void serialSend(ChaincodeMessage message) {
 		try {
-			chatStream.onNext(message);
+			synchronized (sendLock) {
+				chatStream.onNext(message);
+			}
 		} catch (Exception e) {
 			logger.error(String.format("[%s]Error sending %s: %s",
 					shortID(message), message.getType(), e));
@@ -112,60 +127,13 @@ public class Handler {
         }
 	}
 
-	public synchronized Channel<ChaincodeMessage> createChannel(String uuid) {
-		if (responseChannel.containsKey(uuid)) {
-			throw new IllegalStateException("[" + shortID(uuid) + "] Channel exists");
-		}
-
-		Channel<ChaincodeMessage> channel = new Channel<ChaincodeMessage>();
-		responseChannel.put(uuid, channel);
-		if(logger.isTraceEnabled()){
-            logger.trace("channel created with uuid "+uuid);
-        }
-
-		return channel;
-	}
-
-	public synchronized void sendChannel(ChaincodeMessage message) {
-		if (!responseChannel.containsKey(message.getTxid())) {
-			throw new IllegalStateException("[" + shortID(message) + "]sendChannel does not exist");
-		}
-
-		logger.debug(String.format("[%s]Before send", shortID(message)));
-		responseChannel.get(message.getTxid()).add(message);
-		logger.debug(String.format("[%s]After send", shortID(message)));
-	}
-
-	public ChaincodeMessage receiveChannel(Channel<ChaincodeMessage> channel) {
-		try {
-			return channel.take();
-		} catch (InterruptedException e) {
-			logger.debug("channel.take() failed with InterruptedException");
-
-			//Channel has been closed?
-			//TODO
-			return null;
-		}
-	}
-
-	public synchronized void deleteChannel(String uuid) {
-		Channel<ChaincodeMessage> channel = responseChannel.remove(uuid);
-		if (channel != null) {
-			channel.close();
-		}
-
-		if(logger.isTraceEnabled()){
-            logger.trace("deleteChannel done with uuid "+uuid);
-        }
-	}
-
 	/**
 	 * Marks a UUID as either a transaction or a query
 	 * @param uuid ID to be marked
 	 * @param isTransaction true for transaction, false for query
 	 * @return whether or not the UUID was successfully marked
 	 */
-	public synchronized boolean markIsTransaction(String uuid, boolean isTransaction) {
+	public boolean markIsTransaction(String uuid, boolean isTransaction) {
 		if (this.isTransaction == null) {
 			return false;
 		}
@@ -174,7 +142,7 @@ public class Handler {
 		return true;
 	}
 
-	public synchronized void deleteIsTransaction(String uuid) {
+	public void deleteIsTransaction(String uuid) {
 		isTransaction.remove(uuid);
 	}
 
@@ -210,11 +178,14 @@ public class Handler {
 				markIsTransaction(message.getTxid(), true);
 
 				// Create the ChaincodeStub which the chaincode can use to callback
-				ChaincodeStub stub = new ChaincodeStub(message.getTxid(), this, message.getSecurityContext());
+				ChaincodeStub stub = new ChaincodeStub(message.getTxid(), this, message.getSecurityContext(),
+						chaincode.isStateOverlay());
 				// Call chaincode's Run
 				ByteString result;
 				try {
 					result = chaincode.runHelper(stub, getFunction(input.getArgsList()), getParameters(input.getArgsList()));
+					// Write the state buffered by the stub before completing
+					stub.flush();
 				} catch (Exception e) {
 					// Send ERROR message to chaincode support and change state
 					logger.debug(String.format("[%s]Init failed. Sending %s", shortID(message), ERROR));
@@ -227,6 +198,7 @@ public class Handler {
 				} finally {
 					// delete isTransaction entry
 					deleteIsTransaction(message.getTxid());
+					closeRequests(message.getTxid());
 				}
 
 				// Send COMPLETED message to chaincode support and change state
@@ -247,7 +219,30 @@ public class Handler {
 		};
 
 		//Run above task
-		new Thread(task).start();
+		execute(task, message, ERROR);
+	}
+
+	/**
+	 * Run a task handling message on the chaincode worker executor.
+	 * If the executor is overloaded, the message is answered with errorType instead.
+	 */
+	private void execute(Runnable task, ChaincodeMessage message, ChaincodeMessage.Type errorType) {
+		try {
+			chaincode.getExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			logger.warn(String.format("[%s]Chaincode overloaded, rejecting %s. Sending %s",
+					shortID(message), message.getType(), errorType));
+			ChaincodeMessage errorMessage = ChaincodeMessage.newBuilder()
+					.setType(errorType)
+					.setPayload(ByteString.copyFromUtf8("Chaincode overloaded, try again later"))
+					.setTxid(message.getTxid())
+					.build();
+			if (errorType == QUERY_ERROR) {
+				serialSend(errorMessage);
+			} else {
+				triggerNextState(errorMessage, true);
+			}
+		}
 	}
 
 	private String getFunction(List<ByteString> args) {
@@ -311,12 +306,15 @@ public class Handler {
 				markIsTransaction(message.getTxid(), true);
 
 				// Create the ChaincodeStub which the chaincode can use to callback
-				ChaincodeStub stub = new ChaincodeStub(message.getTxid(), this, message.getSecurityContext());
+				ChaincodeStub stub = new ChaincodeStub(message.getTxid(), this, message.getSecurityContext(),
+						chaincode.isStateOverlay());
 
 				// Call chaincode's Run
 				ByteString response;
 				try {
 					response = chaincode.runHelper(stub, getFunction(input.getArgsList()), getParameters(input.getArgsList()));
+					// Write the state buffered by the stub before completing
+					stub.flush();
 				} catch (Exception e) {
 					e.printStackTrace();
 					System.err.flush();
@@ -331,6 +329,7 @@ public class Handler {
 					return;
 				} finally {
 					deleteIsTransaction(message.getTxid());
+					closeRequests(message.getTxid());
 				}
 
 				logger.debug(String.format("[%s]Transaction completed. Sending %s",
@@ -347,7 +346,7 @@ public class Handler {
 			}
 		};
 
-		new Thread(task).start();
+		execute(task, message, ERROR);
 	}
 
 	// handleQuery handles request to execute a query.
@@ -377,7 +376,8 @@ public class Handler {
 
 				// Call chaincode's Query
 				// Create the ChaincodeStub which the chaincode can use to callback
-				ChaincodeStub stub = new ChaincodeStub(message.getTxid(), this, message.getSecurityContext());
+				ChaincodeStub stub = new ChaincodeStub(message.getTxid(), this, message.getSecurityContext(),
+						chaincode.isStateOverlay());
 				ByteString response;
 				try {
 					response = chaincode.queryHelper(stub, getFunction(input.getArgsList()), getParameters(input.getArgsList()));
@@ -393,6 +393,7 @@ public class Handler {
 					return;
 				} finally {
 					deleteIsTransaction(message.getTxid());
+					closeRequests(message.getTxid());
 				}
 
 				// Send COMPLETED message to chaincode support
@@ -407,7 +408,7 @@ public class Handler {
 			}
 		};
 
-		new Thread(task).start();
+		execute(task, message, QUERY_ERROR);
 	}
 
 	// enterTransactionState will execute chaincode's Run if coming from a TRANSACTION event.
@@ -438,19 +439,6 @@ public class Handler {
 		handleQuery(message);
 	}
 
-	// afterResponse is called to deliver a response or error to the chaincode stub.
-	public void afterResponse(Event event) {
-		ChaincodeMessage message = messageHelper(event);
-		try {
-			sendChannel(message);
-			logger.debug(String.format("[%s]Received %s, communicated (state:%s)",
-					shortID(message), message.getType(), fsm.current()));
-		} catch (Exception e) {
-			logger.error(String.format("[%s]error sending %s (state:%s): %s", shortID(message),
-					message.getType(), fsm.current(), e));
-		}
-	}
-
 	private ChaincodeMessage messageHelper(Event event) {
 		try {
 			return (ChaincodeMessage) event.args[0];
@@ -463,60 +451,37 @@ public class Handler {
 
 	public void afterError(Event event) {
 		ChaincodeMessage message = messageHelper(event);
-		/* TODO- revisit. This may no longer be needed with the serialized/streamlined messaging model
-		 * There are two situations in which the ERROR event can be triggered:
-		 * 1. When an error is encountered within handleInit or handleTransaction -
-		 * some issue at the chaincode side; In this case there will be no responseChannel
-		 * and the message has been sent to the validator.
-		 * 2. The chaincode has initiated a request (get/put/del state) to the validator
-		 * and is expecting a response on the responseChannel; If ERROR is received
-		 * from validator, this needs to be notified on the responseChannel.
+		/*
+		 * The ERROR event is only triggered when an error is encountered within handleInit or
+		 * handleTransaction, and the message is sent to the validator. ERROR responses of the validator
+		 * to the requests of the chaincode are routed by receiveMessage and never reach the state machine.
 		 */
-		try {
-			sendChannel(message);
-		} catch (Exception e) {
-			logger.debug(String.format("[%s]Error received from validator %s, communicated(state:%s)",
-					shortID(message), message.getType(), fsm.current()));
-		}
+		logger.debug(String.format("[%s]Chaincode %s (state:%s)",
+				shortID(message), message.getType(), fsm.current()));
 	}
 
 	// handleGetState communicates with the validator to fetch the requested state information from the ledger.
 	public ByteString handleGetState(String key, String uuid) {
-		try {
-			//TODO Implement method to get and put entire state map and not one key at a time?
-			// Create the channel on which to communicate the response from validating peer
-			Channel<ChaincodeMessage> responseChannel;
-			try {
-				responseChannel = createChannel(uuid);
-			} catch (Exception e) {
-				logger.debug("Another state request pending for this Uuid. Cannot process.");
-				throw e;
-			}
-
-			// Send GET_STATE message to validator chaincode support
-			ChaincodeMessage message = ChaincodeMessage.newBuilder()
-					.setType(GET_STATE)
-					.setPayload(ByteString.copyFromUtf8(key))
-					.setTxid(uuid)
-					.build();
-
-			logger.debug(String.format("[%s]Sending %s", shortID(message), GET_STATE));
-			try {
-				serialSend(message);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]error sending GET_STATE %s", shortID(uuid), e));
-				throw new RuntimeException("could not send message");
-			}
+		return await(handleGetStateAsync(key, uuid));
+	}
 
-			// Wait on responseChannel for response
-			ChaincodeMessage response;
-			try {
-				response = receiveChannel(responseChannel);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]Received unexpected message type", shortID(uuid)));
-				throw new RuntimeException("Received unexpected message type");
-			}
+	/**
+	 * Request the state of a key from the validator without waiting for the response.
+	 * Several requests can be outstanding for the same uuid, they are answered in order.
+	 * @param key the key of the state
+	 * @param uuid the uuid of the transaction or query
+	 * @return the future value of the state, completed by the thread receiving messages from the validator
+	 */
+	public CompletableFuture<ByteString> handleGetStateAsync(String key, String uuid) {
+		// Send GET_STATE message to validator chaincode support
+		ChaincodeMessage message = ChaincodeMessage.newBuilder()
+				.setType(GET_STATE)
+				.setPayload(ByteString.copyFromUtf8(key))
+				.setTxid(uuid)
+				.build();
 
+		logger.debug(String.format("[%s]Sending %s", shortID(message), GET_STATE));
+		return sendRequest(message).thenApply(response -> {
 			// Success response
 			if (response.getType() == RESPONSE) {
 				logger.debug(String.format("[%s]GetState received payload %s", shortID(response.getTxid()), RESPONSE));
@@ -533,16 +498,23 @@ public class Handler {
 			logger.error(String.format("[%s]Incorrect chaincode message %s received. Expecting %s or %s",
 					shortID(response.getTxid()), response.getType(), RESPONSE, ERROR));
 			throw new RuntimeException("Incorrect chaincode message received");
-		} finally {
-			deleteChannel(uuid);
-		}
+		});
 	}
 
-	private boolean isTransaction(String uuid) {
-		return isTransaction.containsKey(uuid) && isTransaction.get(uuid);
+	boolean isTransaction(String uuid) {
+		return Boolean.TRUE.equals(isTransaction.get(uuid));
 	}
 
 	public void handlePutState(String key, ByteString value, String uuid) {
+		await(handlePutStateAsync(key, value, uuid));
+	}
+
+	/**
+	 * Put the state of a key without waiting for the validator to acknowledge it.
+	 * Several requests can be outstanding for the same uuid, they are answered in order.
+	 * @return the future completed once the validator has updated the state
+	 */
+	public CompletableFuture<Void> handlePutStateAsync(String key, ByteString value, String uuid) {
 		// Check if this is a transaction
 		logger.debug("["+ shortID(uuid)+"]Inside putstate (\""+key+"\":\""+value+"\"), isTransaction = "+isTransaction(uuid));
 
@@ -555,43 +527,15 @@ public class Handler {
 				.setValue(value)
 				.build();
 
-		// Create the channel on which to communicate the response from validating peer
-		Channel<ChaincodeMessage> responseChannel;
-		try {
-			responseChannel = createChannel(uuid);
-		} catch (Exception e) {
-			logger.error(String.format("[%s]Another state request pending for this Uuid. Cannot process.", shortID(uuid)));
-			throw e;
-		}
-
-		//Defer
-		try {
-			// Send PUT_STATE message to validator chaincode support
-			ChaincodeMessage message = ChaincodeMessage.newBuilder()
-					.setType(PUT_STATE)
-					.setPayload(payload.toByteString())
-					.setTxid(uuid)
-					.build();
-
-			logger.debug(String.format("[%s]Sending %s", shortID(message), PUT_STATE));
-
-			try {
-				serialSend(message);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]error sending PUT_STATE %s", message.getTxid(), e));
-				throw new RuntimeException("could not send message");
-			}
-
-			// Wait on responseChannel for response
-			ChaincodeMessage response;
-			try {
-				response = receiveChannel(responseChannel);
-			} catch (Exception e) {
-				//TODO figure out how to get uuid of receive channel
-				logger.error(String.format("[%s]Received unexpected message type", e));
-				throw e;
-			}
+		// Send PUT_STATE message to validator chaincode support
+		ChaincodeMessage message = ChaincodeMessage.newBuilder()
+				.setType(PUT_STATE)
+				.setPayload(payload.toByteString())
+				.setTxid(uuid)
+				.build();
 
+		logger.debug(String.format("[%s]Sending %s", shortID(message), PUT_STATE));
+		return sendRequest(message).thenAccept(response -> {
 			// Success response
 			if (response.getType() == RESPONSE) {
 				logger.debug(String.format("[%s]Received %s. Successfully updated state", shortID(response.getTxid()), RESPONSE));
@@ -609,54 +553,32 @@ public class Handler {
 					shortID(response.getTxid()), response.getType(), RESPONSE, ERROR));
 
 			throw new RuntimeException("Incorrect chaincode message received");
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			deleteChannel(uuid);
-		}
+		});
 	}
 
 	public void handleDeleteState(String key, String uuid) {
+		await(handleDeleteStateAsync(key, uuid));
+	}
+
+	/**
+	 * Delete the state of a key without waiting for the validator to acknowledge it.
+	 * Several requests can be outstanding for the same uuid, they are answered in order.
+	 * @return the future completed once the validator has deleted the state
+	 */
+	public CompletableFuture<Void> handleDeleteStateAsync(String key, String uuid) {
 		// Check if this is a transaction
 		if (!isTransaction(uuid)) {
 			throw new RuntimeException("Cannot del state in query context");
 		}
 
-		// Create the channel on which to communicate the response from validating peer
-		Channel<ChaincodeMessage> responseChannel;
-		try {
-			responseChannel = createChannel(uuid);
-		} catch (Exception e) {
-			logger.error(String.format("[%s]Another state request pending for this Uuid."
-					+ " Cannot process create createChannel.", shortID(uuid)));
-			throw e;
-		}
-
-		//Defer
-		try {
-			// Send DEL_STATE message to validator chaincode support
-			ChaincodeMessage message = ChaincodeMessage.newBuilder()
-					.setType(DEL_STATE)
-					.setPayload(ByteString.copyFromUtf8(key))
-					.setTxid(uuid)
-					.build();
-			logger.debug(String.format("[%s]Sending %s", shortID(uuid), DEL_STATE));
-			try {
-				serialSend(message);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]error sending DEL_STATE %s", shortID(message), DEL_STATE));
-				throw new RuntimeException("could not send message");
-			}
-
-			// Wait on responseChannel for response
-			ChaincodeMessage response;
-			try {
-				response = receiveChannel(responseChannel);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]Received unexpected message type", shortID(message)));
-				throw new RuntimeException("Received unexpected message type");
-			}
-
+		// Send DEL_STATE message to validator chaincode support
+		ChaincodeMessage message = ChaincodeMessage.newBuilder()
+				.setType(DEL_STATE)
+				.setPayload(ByteString.copyFromUtf8(key))
+				.setTxid(uuid)
+				.build();
+		logger.debug(String.format("[%s]Sending %s", shortID(uuid), DEL_STATE));
+		return sendRequest(message).thenAccept(response -> {
 			if (response.getType() == RESPONSE) {
 				// Success response
 				logger.debug(String.format("[%s]Received %s. Successfully deleted state", message.getTxid(), RESPONSE));
@@ -673,83 +595,84 @@ public class Handler {
 			logger.error(String.format("[%s]Incorrect chaincode message %s received. Expecting %s or %s",
 					shortID(response.getTxid()), response.getType(), RESPONSE, ERROR));
 			throw new RuntimeException("Incorrect chaincode message received");
-		} finally {
-			deleteChannel(uuid);
-		}
+		});
 	}
 
 	public RangeQueryStateResponse handleRangeQueryState(String startKey, String endKey, String uuid) {
-		// Create the channel on which to communicate the response from validating peer
-		Channel<ChaincodeMessage> responseChannel;
-		try {
-			responseChannel = createChannel(uuid);
-		} catch (Exception e) {
-			logger.debug(String.format("[%s]Another state request pending for this Uuid."
-					+ " Cannot process.", shortID(uuid)));
-			throw e;
-		}
+		// Send RANGE_QUERY_STATE message to validator chaincode support
+		RangeQueryState payload = RangeQueryState.newBuilder()
+				.setStartKey(startKey)
+				.setEndKey(endKey)
+				.build();
 
-		//Defer
-		try {
-			// Send RANGE_QUERY_STATE message to validator chaincode support
-			RangeQueryState payload = RangeQueryState.newBuilder()
-					.setStartKey(startKey)
-					.setEndKey(endKey)
-					.build();
+		return rangeQuery(RANGE_QUERY_STATE, payload.toByteString(), uuid);
+	}
 
-			ChaincodeMessage message = ChaincodeMessage.newBuilder()
-					.setType(RANGE_QUERY_STATE)
-					.setPayload(payload.toByteString())
-					.setTxid(uuid)
-					.build();
+	/**
+	 * Get the next page of a range query whose previous page had more results.
+	 * @param id the id of the range query iterator, from the previous page
+	 * @param uuid the uuid of the transaction or query
+	 * @return the next page
+	 */
+	public RangeQueryStateResponse handleRangeQueryStateNext(String id, String uuid) {
+		RangeQueryStateNext payload = RangeQueryStateNext.newBuilder()
+				.setID(id)
+				.build();
 
-			logger.debug(String.format("[%s]Sending %s", shortID(message), RANGE_QUERY_STATE));
-			try {
-				serialSend(message);
-			} catch (Exception e){
-				logger.error(String.format("[%s]error sending %s", shortID(message), RANGE_QUERY_STATE));
-				throw new RuntimeException("could not send message");
-			}
+		return rangeQuery(RANGE_QUERY_STATE_NEXT, payload.toByteString(), uuid);
+	}
 
-			// Wait on responseChannel for response
-			ChaincodeMessage response;
-			try {
-				response = receiveChannel(responseChannel);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]Received unexpected message type", uuid));
-				throw new RuntimeException("Received unexpected message type");
-			}
+	/**
+	 * Release the iterator of a range query whose results are not all consumed.
+	 * @param id the id of the range query iterator
+	 * @param uuid the uuid of the transaction or query
+	 * @return the response of the validator
+	 */
+	public RangeQueryStateResponse handleRangeQueryStateClose(String id, String uuid) {
+		RangeQueryStateClose payload = RangeQueryStateClose.newBuilder()
+				.setID(id)
+				.build();
 
-			if (response.getType() == RESPONSE) {
-				// Success response
-				logger.debug(String.format("[%s]Received %s. Successfully got range",
-						shortID(response.getTxid()), RESPONSE));
+		return rangeQuery(RANGE_QUERY_STATE_CLOSE, payload.toByteString(), uuid);
+	}
 
-				RangeQueryStateResponse rangeQueryResponse;
-				try {
-					rangeQueryResponse = RangeQueryStateResponse.parseFrom(response.getPayload());
-				} catch (Exception e) {
-					logger.error(String.format("[%s]unmarshall error", shortID(response.getTxid())));
-					throw new RuntimeException("Error unmarshalling RangeQueryStateResponse.");
-				}
+	private RangeQueryStateResponse rangeQuery(ChaincodeMessage.Type type, ByteString payload, String uuid) {
+		ChaincodeMessage message = ChaincodeMessage.newBuilder()
+				.setType(type)
+				.setPayload(payload)
+				.setTxid(uuid)
+				.build();
 
-				return rangeQueryResponse;
-			}
+		logger.debug(String.format("[%s]Sending %s", shortID(message), type));
+		ChaincodeMessage response = request(message);
 
-			if (response.getType() == ERROR) {
-				// Error response
-				logger.error(String.format("[%s]Received %s",
-						shortID(response.getTxid()), ERROR));
-				throw new RuntimeException(response.getPayload().toStringUtf8());
+		if (response.getType() == RESPONSE) {
+			// Success response
+			logger.debug(String.format("[%s]Received %s. Successfully got range",
+					shortID(response.getTxid()), RESPONSE));
+
+			RangeQueryStateResponse rangeQueryResponse;
+			try {
+				rangeQueryResponse = RangeQueryStateResponse.parseFrom(response.getPayload());
+			} catch (Exception e) {
+				logger.error(String.format("[%s]unmarshall error", shortID(response.getTxid())));
+				throw new RuntimeException("Error unmarshalling RangeQueryStateResponse.");
 			}
 
-			// Incorrect chaincode message received
-			logger.error(String.format("Incorrect chaincode message %s recieved. Expecting %s or %s",
-					response.getType(), RESPONSE, ERROR));
-			throw new RuntimeException("Incorrect chaincode message received");
-		} finally {
-			deleteChannel(uuid);
+			return rangeQueryResponse;
+		}
+
+		if (response.getType() == ERROR) {
+			// Error response
+			logger.error(String.format("[%s]Received %s",
+					shortID(response.getTxid()), ERROR));
+			throw new RuntimeException(response.getPayload().toStringUtf8());
 		}
+
+		// Incorrect chaincode message received
+		logger.error(String.format("Incorrect chaincode message %s recieved. Expecting %s or %s",
+				response.getType(), RESPONSE, ERROR));
+		throw new RuntimeException("Incorrect chaincode message received");
 	}
 
 	public ByteString handleInvokeChaincode(String chaincodeName, String function, List<ByteString> args, String uuid) {
@@ -769,62 +692,33 @@ public class Handler {
 				.setCtorMsg(input)
 				.build();
 
-		// Create the channel on which to communicate the response from validating peer
-		Channel<ChaincodeMessage> responseChannel;
-		try {
-			responseChannel = createChannel(uuid);
-		} catch (Exception e) {
-			logger.error(String.format("[%s]Another state request pending for this Uuid. Cannot process.", shortID(uuid)));
-			throw e;
-		}
-
-		//Defer
-		try {
-			// Send INVOKE_CHAINCODE message to validator chaincode support
-			ChaincodeMessage message = ChaincodeMessage.newBuilder()
-					.setType(INVOKE_CHAINCODE)
-					.setPayload(payload.toByteString())
-					.setTxid(uuid)
-					.build();
-
-			logger.debug(String.format("[%s]Sending %s",
-					shortID(message), INVOKE_CHAINCODE));
-
-			try {
-				serialSend(message);
-			} catch (Exception e) {
-				logger.error("["+ shortID(message)+"]Error sending "+INVOKE_CHAINCODE+": "+e.getMessage());
-				throw e;
-			}
+		// Send INVOKE_CHAINCODE message to validator chaincode support
+		ChaincodeMessage message = ChaincodeMessage.newBuilder()
+				.setType(INVOKE_CHAINCODE)
+				.setPayload(payload.toByteString())
+				.setTxid(uuid)
+				.build();
 
-			// Wait on responseChannel for response
-			ChaincodeMessage response;
-			try {
-				response = receiveChannel(responseChannel);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]Received unexpected message type", shortID(message)));
-				throw new RuntimeException("Received unexpected message type");
-			}
+		logger.debug(String.format("[%s]Sending %s",
+				shortID(message), INVOKE_CHAINCODE));
+		ChaincodeMessage response = request(message);
 
-			if (response.getType() == RESPONSE) {
-				// Success response
-				logger.debug(String.format("[%s]Received %s. Successfully invoked chaincode", shortID(response.getTxid()), RESPONSE));
-				return response.getPayload();
-			}
-
-			if (response.getType() == ERROR) {
-				// Error response
-				logger.error(String.format("[%s]Received %s.", shortID(response.getTxid()), ERROR));
-				throw new RuntimeException(response.getPayload().toStringUtf8());
-			}
+		if (response.getType() == RESPONSE) {
+			// Success response
+			logger.debug(String.format("[%s]Received %s. Successfully invoked chaincode", shortID(response.getTxid()), RESPONSE));
+			return response.getPayload();
+		}
 
-			// Incorrect chaincode message received
-			logger.debug(String.format("[%s]Incorrect chaincode message %s received. Expecting %s or %s",
-					shortID(response.getTxid()), response.getType(), RESPONSE, ERROR));
-			throw new RuntimeException("Incorrect chaincode message received");
-		} finally {
-			deleteChannel(uuid);
+		if (response.getType() == ERROR) {
+			// Error response
+			logger.error(String.format("[%s]Received %s.", shortID(response.getTxid()), ERROR));
+			throw new RuntimeException(response.getPayload().toStringUtf8());
 		}
+
+		// Incorrect chaincode message received
+		logger.debug(String.format("[%s]Incorrect chaincode message %s received. Expecting %s or %s",
+				shortID(response.getTxid()), response.getType(), RESPONSE, ERROR));
+		throw new RuntimeException("Incorrect chaincode message received");
 	}
 
 	public ByteString handleQueryChaincode(String chaincodeName, String function, List<ByteString> args, String uuid) {
@@ -838,68 +732,214 @@ public class Handler {
 				.setCtorMsg(input)
 				.build();
 
-		// Create the channel on which to communicate the response from validating peer
-		Channel<ChaincodeMessage> responseChannel;
-		try {
-			responseChannel = createChannel(uuid);
-		} catch (Exception e) {
-			logger.debug(String.format("Another request pending for this Uuid. Cannot process."));
-			throw e;
+		// Send INVOKE_QUERY message to validator chaincode support
+		ChaincodeMessage message = ChaincodeMessage.newBuilder()
+				.setType(INVOKE_QUERY)
+				.setPayload(payload.toByteString())
+				.setTxid(uuid)
+				.build();
+
+		logger.debug(String.format("[%s]Sending %s", shortID(message), INVOKE_QUERY));
+		ChaincodeMessage response = request(message);
+
+		if (response.getType() == RESPONSE) {
+			// Success response
+			logger.debug(String.format("[%s]Received %s. Successfully queried chaincode",
+					shortID(response.getTxid()), RESPONSE));
+			return response.getPayload();
 		}
 
-		//Defer
+		if (response.getType() == ERROR) {
+			// Error response
+			logger.error(String.format("[%s]Received %s.",
+					shortID(response.getTxid()), ERROR));
+			throw new RuntimeException(response.getPayload().toStringUtf8());
+		}
+
+		// Incorrect chaincode message received
+		logger.error(String.format("[%s]Incorrect chaincode message %s recieved. Expecting %s or %s",
+				shortID(response.getTxid()), response.getType(), RESPONSE, ERROR));
+		throw new RuntimeException("Incorrect chaincode message received");
+	}
+
+	/**
+	 * Send a request to the validator and wait for its response.
+	 */
+	private ChaincodeMessage request(ChaincodeMessage message) {
+		return await(sendRequest(message));
+	}
+
+	private static <T> T await(CompletableFuture<T> future) {
 		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for the validator response");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
 
-			// Send INVOKE_QUERY message to validator chaincode support
-			ChaincodeMessage message = ChaincodeMessage.newBuilder()
-					.setType(INVOKE_QUERY)
-					.setPayload(payload.toByteString())
-					.setTxid(uuid)
-					.build();
+	/**
+	 * Send a request to the validator on the request pipeline of its uuid.
+	 * @return the future response of the validator
+	 */
+	private CompletableFuture<ChaincodeMessage> sendRequest(ChaincodeMessage message) {
+		PendingRequest request = new PendingRequest(message);
+		// A pipeline found idle and closed by the response thread is replaced
+		while (!requests.computeIfAbsent(message.getTxid(), this::newRequestPipeline).submit(request)) {
+			Thread.yield();
+		}
+		return request.response;
+	}
 
-			logger.debug(String.format("[%s]Sending %s", shortID(message), INVOKE_QUERY));
+	private RequestPipeline newRequestPipeline(String uuid) {
+		// Requests can only be made while the transaction or query runs
+		if (!isTransaction.containsKey(uuid)) {
+			throw new IllegalStateException("[" + shortID(uuid) + "]Transaction or query has ended");
+		}
+		return new RequestPipeline(uuid, chaincode.getMaxPendingStateRequests());
+	}
 
-			try {
-				serialSend(message);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]error sending %s", shortID(message), INVOKE_QUERY));
-				throw new RuntimeException("could not send message");
+	/**
+	 * Fail the requests of a transaction or query that ended, whose responses are dropped if they arrive.
+	 */
+	private void closeRequests(String uuid) {
+		RequestPipeline pipeline = requests.remove(uuid);
+		if (pipeline != null) {
+			pipeline.close();
+		}
+	}
+
+	private static final class PendingRequest {
+		final ChaincodeMessage message;
+		final CompletableFuture<ChaincodeMessage> response = new CompletableFuture<>();
+		long id;
+
+		PendingRequest(ChaincodeMessage message) {
+			this.message = message;
+		}
+	}
+
+	/**
+	 * The requests of a transaction or query to the validator.
+	 * Responses only carry the uuid, so requests are numbered in the order they are sent and responses are
+	 * matched to them in that order. At most maxPending requests are outstanding at the validator, the
+	 * others wait and are sent as responses arrive, without waking up the chaincode in between.
+	 */
+	private final class RequestPipeline {
+		private final String uuid;
+		private final int maxPending;
+		private final Deque<PendingRequest> waiting = new ArrayDeque<>();
+		private final Deque<PendingRequest> sent = new ArrayDeque<>();
+		private long lastRequestId;
+		private boolean closed;
+
+		RequestPipeline(String uuid, int maxPending) {
+			this.uuid = uuid;
+			this.maxPending = Math.max(1, maxPending);
+		}
+
+		/**
+		 * @return false if the pipeline was closed, in which case the request must be submitted to a new one
+		 */
+		synchronized boolean submit(PendingRequest request) {
+			if (closed) {
+				return false;
 			}
+			request.id = ++lastRequestId;
+			waiting.add(request);
+			sendWaiting();
+			closeIfIdle();
+			return true;
+		}
 
-			// Wait on responseChannel for response
-			ChaincodeMessage response;
-			try {
-				response = receiveChannel(responseChannel);
-			} catch (Exception e) {
-				logger.error(String.format("[%s]Received unexpected message type", shortID(message)));
-				throw new RuntimeException("Received unexpected message type");
+		/**
+		 * Complete the oldest outstanding request with the response.
+		 * @return false if no request was outstanding
+		 */
+		boolean complete(ChaincodeMessage response) {
+			PendingRequest request;
+			synchronized (this) {
+				request = sent.poll();
+				if (request == null) {
+					return false;
+				}
+				sendWaiting();
+				closeIfIdle();
+			}
+			if (logger.isTraceEnabled()) {
+				logger.trace(String.format("[%s]Response %s to request %d", shortID(uuid), response.getType(), request.id));
 			}
+			request.response.complete(response);
+			return true;
+		}
 
-			if (response.getType() == RESPONSE) {
-				// Success response
-				logger.debug(String.format("[%s]Received %s. Successfully queried chaincode",
-						shortID(response.getTxid()), RESPONSE));
-				return response.getPayload();
+		// Sends happen under the lock, so that they are in the order responses are matched in
+		private void sendWaiting() {
+			while (sent.size() < maxPending && !waiting.isEmpty()) {
+				PendingRequest request = waiting.poll();
+				sent.add(request);
+				try {
+					serialSend(request.message);
+				} catch (RuntimeException e) {
+					sent.removeLast();
+					logger.error(String.format("[%s]error sending %s", shortID(uuid), request.message.getType()));
+					request.response.completeExceptionally(new RuntimeException("could not send message"));
+				}
 			}
+		}
 
-			if (response.getType() == ERROR) {
-				// Error response
-				logger.error(String.format("[%s]Received %s.",
-						shortID(response.getTxid()), ERROR));
-				throw new RuntimeException(response.getPayload().toStringUtf8());
+		private void closeIfIdle() {
+			if (sent.isEmpty() && waiting.isEmpty()) {
+				closed = true;
+				requests.remove(uuid, this);
 			}
+		}
 
-			// Incorrect chaincode message received
-			logger.error(String.format("[%s]Incorrect chaincode message %s recieved. Expecting %s or %s",
-					shortID(response.getTxid()), response.getType(), RESPONSE, ERROR));
-			throw new RuntimeException("Incorrect chaincode message received");
-		} finally {
-			deleteChannel(uuid);
+		void close() {
+			List<PendingRequest> pending;
+			synchronized (this) {
+				closed = true;
+				pending = new ArrayList<>(sent);
+				pending.addAll(waiting);
+				sent.clear();
+				waiting.clear();
+			}
+			for (PendingRequest request : pending) {
+				logger.debug(String.format("[%s]Request %d %s abandoned", shortID(uuid), request.id,
+						request.message.getType()));
+				request.response.completeExceptionally(new IllegalStateException(
+						"[" + shortID(uuid) + "]Transaction or query ended before the response to " + request.message.getType()));
+			}
+		}
+	}
+
+	/**
+	 * Handle a message received from the validator.
+	 * RESPONSE and ERROR messages answer the requests of a transaction or query, and are routed to its
+	 * request pipeline without touching the state machine. Those arriving after the transaction or query
+	 * ended are dropped. Other messages are handled by {@link #handleMessage(ChaincodeMessage)}.
+	 * @param message the message of the validator
+	 * @throws Exception
+	 */
+	public void receiveMessage(ChaincodeMessage message) throws Exception {
+		if (message.getType() == RESPONSE || message.getType() == ERROR) {
+			RequestPipeline pipeline = requests.get(message.getTxid());
+			if (pipeline == null || !pipeline.complete(message)) {
+				logger.warn(String.format("[%s]Dropping %s received without pending request",
+						shortID(message), message.getType()));
+			}
+			return;
 		}
+		handleMessage(message);
 	}
 
 	// handleMessage message handles loop for org.hyperledger.fabric.java.shim side of chaincode/validator stream.
-	public synchronized void handleMessage(ChaincodeMessage message) throws Exception {
+	public void handleMessage(ChaincodeMessage message) throws Exception {
 
 		if (message.getType() == ChaincodeMessage.Type.KEEPALIVE){
 			logger.debug(String.format("[%s] Recieved KEEPALIVE message, do nothing",
@@ -909,33 +949,38 @@ public class Handler {
 				return;
 		}
 
-		logger.debug(String.format("[%s]Handling ChaincodeMessage of type: %s(state:%s)",
-				shortID(message), message.getType(), fsm.current()));
+		String errStr;
+		synchronized (fsmLock) {
+			logger.debug(String.format("[%s]Handling ChaincodeMessage of type: %s(state:%s)",
+					shortID(message), message.getType(), fsm.current()));
+
+			if (fsm.eventCanOccur(message.getType().toString())) {
+				// Filter errors to allow NoTransitionError and CanceledError
+				// to not propagate for cases where embedded Err == nil.
+				try {
+					fsm.raiseEvent(message.getType().toString(), message);
+				} catch (NoTransitionException e) {
+					if (e.error != null) throw e;
+					logger.debug("["+ shortID(message)+"]Ignoring NoTransitionError");
+				} catch (CancelledException e) {
+					if (e.error != null) throw e;
+					logger.debug("["+ shortID(message)+"]Ignoring CanceledError");
+				}
+				return;
+			}
 
-		if (fsm.eventCannotOccur(message.getType().toString())) {
-			String errStr = String.format("[%s]Chaincode handler org.hyperledger.fabric.java.fsm cannot handle message (%s) with payload size (%d) while in state: %s",
+			errStr = String.format("[%s]Chaincode handler org.hyperledger.fabric.java.fsm cannot handle message (%s) with payload size (%d) while in state: %s",
 					message.getTxid(), message.getType(), message.getPayload().size(), fsm.current());
-			ByteString payload = ByteString.copyFromUtf8(errStr);
-			ChaincodeMessage errormessage = ChaincodeMessage.newBuilder()
-					.setType(ERROR)
-					.setPayload(payload)
-					.setTxid(message.getTxid())
-					.build();
-			serialSend(errormessage);
-			throw new RuntimeException(errStr);
 		}
 
-		// Filter errors to allow NoTransitionError and CanceledError
-		// to not propagate for cases where embedded Err == nil.
-		try {
-			fsm.raiseEvent(message.getType().toString(), message);
-		} catch (NoTransitionException e) {
-			if (e.error != null) throw e;
-			logger.debug("["+ shortID(message)+"]Ignoring NoTransitionError");
-		} catch (CancelledException e) {
-			if (e.error != null) throw e;
-			logger.debug("["+ shortID(message)+"]Ignoring CanceledError");
-		}
+		ByteString payload = ByteString.copyFromUtf8(errStr);
+		ChaincodeMessage errormessage = ChaincodeMessage.newBuilder()
+				.setType(ERROR)
+				.setPayload(payload)
+				.setTxid(message.getTxid())
+				.build();
+		serialSend(errormessage);
+		throw new RuntimeException(errStr);
 	}
 
 	private String shortID(ChaincodeMessage message) {
@@ -0,0 +1,92 @@
+/*
+Copyright DTCC 2016 All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.hyperledger.fabric.sdk.shim;
+
+import org.hyperledger.protos.Chaincode.RangeQueryStateKeyValue;
+import org.hyperledger.protos.Chaincode.RangeQueryStateResponse;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over the key values of a range query, in key order.
+ * Results are fetched from the validator one page at a time, when the previous page is consumed, so only
+ * one page is held in memory whatever the size of the range.
+ * An iterator that is not consumed to the end must be closed, to release the iterator of the validator.
+ */
+public class RangeQueryIterator implements Iterator<RangeQueryStateKeyValue>, AutoCloseable {
+
+	private final Handler handler;
+	private final String uuid;
+	private final String startKey;
+	private final String endKey;
+
+	private RangeQueryStateResponse page;
+	private int index;
+	private boolean closed;
+
+	RangeQueryIterator(Handler handler, String uuid, String startKey, String endKey) {
+		this.handler = handler;
+		this.uuid = uuid;
+		this.startKey = startKey;
+		this.endKey = endKey;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		}
+		if (page == null) {
+			page = handler.handleRangeQueryState(startKey, endKey, uuid);
+			index = 0;
+		}
+		// Pages may come back empty while the validator still has more
+		while (index == page.getKeysAndValuesCount() && page.getHasMore()) {
+			page = handler.handleRangeQueryStateNext(page.getID(), uuid);
+			index = 0;
+		}
+		if (index == page.getKeysAndValuesCount()) {
+			// The validator released its iterator with the last page
+			closed = true;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public RangeQueryStateKeyValue next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.getKeysAndValues(index++);
+	}
+
+	/**
+	 * Release the iterator of the validator, if the results were not all consumed.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (page != null && page.getHasMore()) {
+			handler.handleRangeQueryStateClose(page.getID(), uuid);
+		}
+	}
+}
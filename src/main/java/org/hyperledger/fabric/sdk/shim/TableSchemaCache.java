@@ -0,0 +1,65 @@
+/*
+Copyright DTCC 2016 All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.hyperledger.fabric.sdk.shim;
+
+import org.hyperledger.protos.TableProto.Table;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Definitions of the tables of a chaincode, shared by its transactions and queries, so that row
+ * operations do not read and parse the table definition from the ledger each time.
+ * Only existing tables are cached. A table is invalidated when a transaction creates or deletes it, and
+ * a definition read before an invalidation is not cached after it.
+ * Definitions are only cached by transactions, which see the changes of the transactions executed before
+ * them, and not by queries, which may read a definition changed by a transaction not committed yet.
+ * A definition cached by a transaction that is executed but never committed by the validator remains
+ * cached until the table is created or deleted again, or the chaincode restarts.
+ */
+class TableSchemaCache {
+
+	private final Map<String, Table> tables = new ConcurrentHashMap<>();
+	private long generation;
+
+	Table get(String tableName) {
+		return tables.get(tableName);
+	}
+
+	/**
+	 * @return the generation to pass to {@link #put(Table, long)} for a definition about to be read
+	 */
+	synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * Cache a table definition, unless a table was invalidated since it was read.
+	 * @param table the definition read from the ledger
+	 * @param readGeneration the generation before the definition was read
+	 */
+	synchronized void put(Table table, long readGeneration) {
+		if (readGeneration == generation) {
+			tables.put(table.getName(), table);
+		}
+	}
+
+	synchronized void invalidate(String tableName) {
+		generation++;
+		tables.remove(tableName);
+	}
+}
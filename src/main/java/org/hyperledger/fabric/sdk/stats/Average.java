@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.hyperledger.fabric.sdk.stats;
+
+/**
+ * An exponentially weighted moving average.
+ */
+public class Average {
+
+    private final double weight;
+    private double value;
+    private boolean hasValue = false;
+
+    /**
+     * @param weight weight given to each new sample, between 0 and 1
+     */
+    public Average(double weight) {
+        if (weight <= 0 || weight > 1) {
+            throw new IllegalArgumentException("weight must be in (0, 1]");
+        }
+        this.weight = weight;
+    }
+
+    /**
+     * Add a sample to the average.
+     * @param sample the new sample
+     */
+    public synchronized void addValue(double sample) {
+        if (hasValue) {
+            value += weight * (sample - value);
+        } else {
+            value = sample;
+            hasValue = true;
+        }
+    }
+
+    /**
+     * Get the current average.
+     * @return the average, or 0 if no sample was added yet
+     */
+    public synchronized double getValue() {
+        return value;
+    }
+
+    /**
+     * Determine if at least one sample was added.
+     * @return true if the average has a value
+     */
+    public synchronized boolean hasValue() {
+        return hasValue;
+    }
+}
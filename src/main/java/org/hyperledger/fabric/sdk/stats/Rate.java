@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.hyperledger.fabric.sdk.stats;
+
+/**
+ * Tracks the rate at which events occur, as a moving average of the interval between events.
+ */
+public class Rate {
+
+    private static final double WEIGHT = 0.2;
+    // Interval used when events occur within the same tick of the clock
+    private static final double MIN_INTERVAL_MS = 0.001;
+
+    private final Average interval = new Average(WEIGHT);
+    private long lastTick = -1;
+
+    /**
+     * Record the occurrence of an event.
+     */
+    public synchronized void tick() {
+        long now = System.nanoTime();
+        if (lastTick >= 0) {
+            interval.addValue((now - lastTick) / 1e6);
+        }
+        lastTick = now;
+    }
+
+    /**
+     * Get the rate of events.
+     * @return the rate in events per millisecond, or 0 if it is not known yet
+     */
+    public synchronized double getValue() {
+        if (!interval.hasValue()) {
+            return 0;
+        }
+        return 1 / Math.max(interval.getValue(), MIN_INTERVAL_MS);
+    }
+}
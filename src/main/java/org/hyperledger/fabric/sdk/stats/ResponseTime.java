@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2016 DTCC, Fujitsu Australia Software Technology - All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 	  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.hyperledger.fabric.sdk.stats;
+
+/**
+ * Tracks the moving average of the time taken by an operation.
+ */
+public class ResponseTime {
+
+    private static final double WEIGHT = 0.2;
+
+    private final Average average = new Average(WEIGHT);
+
+    /**
+     * Mark the start of an operation.
+     * @return the start time, to be passed to {@link #stop(long)}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Mark the end of an operation.
+     * @param start the value returned by {@link #start()} when the operation began
+     */
+    public void stop(long start) {
+        average.addValue((System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Get the average response time.
+     * @return the response time in milliseconds, or 0 if no operation completed yet
+     */
+    public double getValue() {
+        return average.getValue();
+    }
+}
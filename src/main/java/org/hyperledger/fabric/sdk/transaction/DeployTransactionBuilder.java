@@ -16,16 +16,20 @@ package org.hyperledger.fabric.sdk.transaction;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hyperledger.fabric.sdk.ChaincodeLanguage;
 import org.hyperledger.fabric.sdk.exception.CryptoException;
 import org.hyperledger.fabric.sdk.exception.DeploymentException;
+import org.hyperledger.fabric.sdk.helper.DeploymentPackageCache;
+import org.hyperledger.fabric.sdk.helper.DirectoryHashCache;
 import org.hyperledger.fabric.sdk.helper.SDKUtil;
 import org.hyperledger.protos.Chaincode;
 
-import com.google.common.io.Files;
+import com.google.protobuf.ByteString;
 
 import io.netty.util.internal.StringUtil;
 import org.hyperledger.protos.Fabric;
@@ -116,27 +120,29 @@ public class DeployTransactionBuilder extends TransactionBuilder {
 		String hash = SDKUtil.generateParameterHash(chaincodeDir, request.getFcn(), request.getArgs());
 
 		// Compute the hash of the project directory contents
-		hash = SDKUtil.generateDirectoryHash(rootDir, chaincodeDir, hash);
+		hash = SDKUtil.generateDirectoryHash(rootDir, chaincodeDir, hash,
+				DirectoryHashCache.getInstance(context.getChain().getDeployCacheDirectory()));
 		logger.debug("hash: " + hash);
 
 		// Substitute the hashStrHash for the image name
 		dockerFileContents = String.format(dockerFileContents, hash);
 
-		// Create a Docker file with dockerFileContents
-		String dockerFilePath = SDKUtil.combinePaths(projDir, "Dockerfile");
-		Files.write(dockerFileContents.getBytes(), new java.io.File(dockerFilePath));
-
-		logger.debug(String.format("Created Dockerfile at [%s]", dockerFilePath));
-
-		// Create the .tar.gz file of the chaincode package
-		String targzFilePath = SDKUtil.combinePaths(System.getProperty("java.io.tmpdir"), "deployment-package.tar.gz");
-		// Create the compressed archive
-		SDKUtil.generateTarGz(projDir, targzFilePath);
-		byte[] data = SDKUtil.readFile(new File(targzFilePath));
-
-		// Clean up temporary files
-		SDKUtil.deleteFileOrDirectory(new File(targzFilePath));
-		SDKUtil.deleteFileOrDirectory(new File(dockerFilePath));
+		// Reuse the package built for a previous deployment of the same parameters and contents
+		DeploymentPackageCache packageCache = DeploymentPackageCache.getInstance(context.getChain().getDeployCacheDirectory());
+		Map<String, byte[]> extraEntries = Collections.singletonMap("Dockerfile", dockerFileContents.getBytes());
+		String packageKey = DeploymentPackageCache.getKey(request.getChaincodeLanguage().toString(), hash,
+				new File(projDir), extraEntries);
+		ByteString data = packageCache.get(packageKey);
+		if (data == null) {
+			// Create the compressed archive of the chaincode package in memory, with the Docker file
+			// added to the project directory contents
+			ByteString.Output output = ByteString.newOutput();
+			SDKUtil.generateTarGz(new File(projDir), output, extraEntries);
+			data = output.toByteString();
+			packageCache.put(packageKey, data);
+		} else {
+			logger.debug(String.format("Using cached deployment package %s", packageKey));
+		}
 
 		// create transaction
 		Fabric.Transaction.Builder txBuilder = createTransactionBuilder(ccType,
@@ -68,7 +68,7 @@ public abstract class TransactionBuilder {
 			Fabric.Transaction.Type transactionType,
 			String name, 
 			List<String> args,
-			byte[] codePackage,
+			ByteString codePackage,
 			String txId,
 			String chaincodePath) throws CryptoException, IOException {
 		// build chaincodeId
@@ -98,9 +98,9 @@ public abstract class TransactionBuilder {
 			ChaincodeDeploymentSpec.Builder chaincodeDeploymentSpecBuilder = Chaincode.ChaincodeDeploymentSpec
 					.newBuilder().setChaincodeSpec(chaincodeSpec);
 
-			if (codePackage != null && codePackage.length > 0) {
+			if (codePackage != null && !codePackage.isEmpty()) {
 				chaincodeDeploymentSpecBuilder = chaincodeDeploymentSpecBuilder
-						.setCodePackage(ByteString.copyFrom(codePackage));
+						.setCodePackage(codePackage);
 			}
 			payload = chaincodeDeploymentSpecBuilder.build().toByteString();
 			break;
@@ -31,6 +31,7 @@ import org.hyperledger.fabric.sdk.Chain;
 import org.hyperledger.fabric.sdk.ChainCodeResponse;
 import org.hyperledger.fabric.sdk.ChainCodeResponse.Status;
 import org.hyperledger.fabric.sdk.DeployRequest;
+import org.hyperledger.fabric.sdk.Enrollment;
 import org.hyperledger.fabric.sdk.InvokeRequest;
 import org.hyperledger.fabric.sdk.Member;
 import org.hyperledger.fabric.sdk.MemberServices;
@@ -332,9 +333,7 @@ public class TransactionContext  {
         }
 
         logger.debug("Using chain key: " + this.member.getEnrollment().getChainKey());
-        PublicKey ecdsaChainKey = this.chain.getCryptoPrimitives().ecdsaPEMToPublicKey(
-                this.member.getEnrollment().getChainKey()
-        );
+        PublicKey ecdsaChainKey = getChainPublicKey();
 
         byte[] encMsgToValidators = this.chain.getCryptoPrimitives().eciesEncryptECDSA(
             ecdsaChainKey,
@@ -342,30 +341,39 @@ public class TransactionContext  {
         );
         transaction.getTxBuilder().setToValidators(ByteString.copyFrom(encMsgToValidators));
 
-        // Encrypts chaincodeID using txKey
+        // Encrypts chaincodeID, payload and metadata using txKey.
+        // The three ciphertexts share one key agreement and key derivation.
         // logger.debug('CHAINCODE ID %s', transaction.chaincodeID);
+        byte[] chaincodeID = transaction.getTxBuilder().getChaincodeID().toByteArray();
+        byte[] payload = transaction.getTxBuilder().getPayload().toByteArray();
 
-        byte[] encryptedChaincodeID = this.chain.getCryptoPrimitives().eciesEncrypt(
-            txKey.getPublic(),
-            transaction.getTxBuilder().getChaincodeID().toByteArray()
-        );
-        transaction.getTxBuilder().setChaincodeID(ByteString.copyFrom(encryptedChaincodeID));
-
-        // Encrypts payload using txKey
-        byte[] encryptedPayload = this.chain.getCryptoPrimitives().eciesEncrypt(
-            txKey.getPublic(),
-            transaction.getTxBuilder().getPayload().toByteArray()
-        );
-        transaction.getTxBuilder().setPayload(ByteString.copyFrom(encryptedPayload));
-
-        // Encrypt metadata using txKey
+        byte[][] ciphertexts;
         if (transaction.getTxBuilder().getMetadata() != null && transaction.getTxBuilder().getMetadata().toByteArray() != null) {
-            byte[] encryptedMetadata = this.chain.getCryptoPrimitives().eciesEncrypt(
+            ciphertexts = this.chain.getCryptoPrimitives().eciesEncryptAll(
                 txKey.getPublic(),
+                chaincodeID,
+                payload,
                 transaction.getTxBuilder().getMetadata().toByteArray()
             );
-            transaction.getTxBuilder().setMetadata(ByteString.copyFrom(encryptedMetadata));
+            transaction.getTxBuilder().setMetadata(ByteString.copyFrom(ciphertexts[2]));
+        } else {
+            ciphertexts = this.chain.getCryptoPrimitives().eciesEncryptAll(txKey.getPublic(), chaincodeID, payload);
+        }
+        transaction.getTxBuilder().setChaincodeID(ByteString.copyFrom(ciphertexts[0]));
+        transaction.getTxBuilder().setPayload(ByteString.copyFrom(ciphertexts[1]));
+    }
+
+    /**
+     * Get the chain public key of the member enrollment, parsing it only the first time.
+     */
+    private PublicKey getChainPublicKey() throws CryptoException {
+        Enrollment enrollment = this.member.getEnrollment();
+        PublicKey chainPublicKey = enrollment.getChainPublicKey();
+        if (chainPublicKey == null) {
+            chainPublicKey = this.chain.getCryptoPrimitives().ecdsaPEMToPublicKey(enrollment.getChainKey());
+            enrollment.setChainPublicKey(chainPublicKey);
         }
+        return chainPublicKey;
     }
 
     private byte[] decryptResult(byte[] ct) throws CryptoException {
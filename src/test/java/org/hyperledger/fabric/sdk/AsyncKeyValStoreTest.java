@@ -0,0 +1,85 @@
+package org.hyperledger.fabric.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncKeyValStoreTest {
+
+	@Test
+	public void testWriteBehind() {
+		MemoryKeyValStore recording = new MemoryKeyValStore();
+		AsyncKeyValStore store = new AsyncKeyValStore(recording, 1000, TimeUnit.HOURS.toMillis(1));
+		for (int i = 0; i < 10; i++) {
+			store.setValue("member.user" + (i % 5), "state" + i);
+		}
+
+		// Values are readable before they are written
+		Assert.assertEquals("state9", store.getValue("member.user4"));
+		Assert.assertTrue(recording.batches.isEmpty());
+
+		store.flush();
+		Assert.assertEquals(1, recording.batches.size());
+		Assert.assertEquals(5, recording.batches.get(0).size());
+		Assert.assertEquals("state9", recording.getValue("member.user4"));
+		Assert.assertEquals("state5", recording.getValue("member.user0"));
+	}
+
+	@Test
+	public void testBatchSize() throws Exception {
+		MemoryKeyValStore recording = new MemoryKeyValStore();
+		AsyncKeyValStore store = new AsyncKeyValStore(recording, 3, TimeUnit.HOURS.toMillis(1));
+		store.setValue("member.user1", "state1");
+		store.setValue("member.user2", "state2");
+		CompletableFuture<Void> written = store.setValueAsync("member.user3", "state3");
+		written.get(10, TimeUnit.SECONDS);
+		Assert.assertEquals(Collections.singletonList(3), sizes(recording));
+	}
+
+	@Test
+	public void testMaxDelay() throws Exception {
+		MemoryKeyValStore recording = new MemoryKeyValStore();
+		AsyncKeyValStore store = new AsyncKeyValStore(recording, 1000, 10);
+		store.setValueAsync("member.user1", "state1").get(10, TimeUnit.SECONDS);
+		Assert.assertEquals("state1", recording.getValue("member.user1"));
+		store.close();
+	}
+
+	@Test
+	public void testFailedBatchRetried() throws Exception {
+		MemoryKeyValStore recording = new MemoryKeyValStore();
+		recording.failures = 1;
+		AsyncKeyValStore store = new AsyncKeyValStore(recording, 1000, TimeUnit.HOURS.toMillis(1));
+		store.setValue("member.user1", "state1");
+		store.setValue("member.user2", "state2");
+		try {
+			store.flush();
+			Assert.fail("Failed batch was not reported");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("disk full", e.getMessage());
+		}
+
+		// The failed values are still readable, and written with the next batch unless overwritten
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+		store.setValue("member.user2", "state2bis");
+		store.flush();
+		Assert.assertEquals(Collections.singletonList(2), sizes(recording));
+		Assert.assertEquals("state1", recording.getValue("member.user1"));
+		Assert.assertEquals("state2bis", recording.getValue("member.user2"));
+		store.close();
+	}
+
+	private static List<Integer> sizes(MemoryKeyValStore recording) {
+		List<Integer> sizes = new ArrayList<>();
+		for (Map<String, String> batch : recording.batches) {
+			sizes.add(batch.size());
+		}
+		return sizes;
+	}
+}
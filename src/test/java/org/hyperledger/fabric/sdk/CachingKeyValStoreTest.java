@@ -0,0 +1,57 @@
+package org.hyperledger.fabric.sdk;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingKeyValStoreTest {
+
+	private MemoryKeyValStore counting;
+	private CachingKeyValStore store;
+
+	@Before
+	public void init() {
+		counting = new MemoryKeyValStore();
+		counting.values.put("member.user1", "state1");
+		store = new CachingKeyValStore(counting);
+	}
+
+	@Test
+	public void testCachedValue() {
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+		Assert.assertEquals(1, counting.gets);
+		Assert.assertEquals(0.5, store.getStats().hitRate(), 0);
+	}
+
+	@Test
+	public void testNegativeCaching() {
+		Assert.assertNull(store.getValue("member.user2"));
+		Assert.assertNull(store.getValue("member.user2"));
+		Assert.assertEquals(1, counting.gets);
+
+		store.invalidateAll();
+		store.setNegativeCaching(false);
+		Assert.assertNull(store.getValue("member.user2"));
+		Assert.assertNull(store.getValue("member.user2"));
+		Assert.assertEquals(3, counting.gets);
+	}
+
+	@Test
+	public void testWriteThrough() {
+		Assert.assertNull(store.getValue("member.user2"));
+		store.setValue("member.user2", "state2");
+		Assert.assertEquals("state2", store.getValue("member.user2"));
+		Assert.assertEquals("state2", counting.values.get("member.user2"));
+		Assert.assertEquals(1, counting.gets);
+	}
+
+	@Test
+	public void testWriteInvalidate() {
+		store.setWritePolicy(CachingKeyValStore.WritePolicy.WRITE_INVALIDATE);
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+		store.setValue("member.user1", "state1bis");
+		Assert.assertEquals("state1bis", store.getValue("member.user1"));
+		Assert.assertEquals(2, counting.gets);
+	}
+}
@@ -0,0 +1,92 @@
+package org.hyperledger.fabric.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hyperledger.fabric.sdk.exception.EnrollmentException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChainTest {
+
+	private MemoryKeyValStore store;
+	private StubMemberServices memberServices;
+	private Chain chain;
+
+	@Before
+	public void init() {
+		store = new MemoryKeyValStore();
+		memberServices = new StubMemberServices();
+		chain = new Chain("chain1");
+		chain.setKeyValStore(store);
+		chain.setMemberServices(memberServices);
+	}
+
+	@Test
+	public void testMemberCacheEviction() {
+		chain.setMemberCacheSize(2);
+		Member member = chain.getMember("user1");
+		member.setAffiliation("bank_a");
+		Assert.assertSame(member, chain.getMember("user1"));
+
+		// The least recently used member is saved when it is evicted, and restored when loaded again
+		chain.getMember("user2");
+		chain.getMember("user3");
+		Assert.assertEquals(1, chain.getMemberCacheStats().evictionCount());
+		Assert.assertNotNull(store.getValue("member.user1"));
+		Member reloaded = chain.getMember("user1");
+		Assert.assertNotSame(member, reloaded);
+		Assert.assertEquals("bank_a", reloaded.getAffiliation());
+	}
+
+	@Test
+	public void testMemberCacheResize() {
+		chain.getMember("user1").setAffiliation("bank_a");
+		chain.getMember("user2").setAffiliation("bank_b");
+		Member member3 = chain.getMember("user3");
+
+		// Shrinking the cache evicts and saves the members over the new size
+		chain.setMemberCacheSize(1);
+		Assert.assertSame(member3, chain.getMember("user3"));
+		Assert.assertEquals("bank_a", chain.getMember("user1").getAffiliation());
+		Assert.assertEquals("bank_b", chain.getMember("user2").getAffiliation());
+	}
+
+	@Test
+	public void testRegisterAndEnrollAllPartialFailure() throws Exception {
+		memberServices.failedEnrollments.add("user2");
+		List<RegistrationRequest> requests = new ArrayList<>();
+		for (int i = 1; i <= 3; i++) {
+			RegistrationRequest request = new RegistrationRequest();
+			request.setEnrollmentID("user" + i);
+			requests.add(request);
+		}
+		try {
+			chain.registerAndEnrollAll(requests, 2);
+			Assert.fail("Failed enrollment was not reported");
+		} catch (EnrollmentException e) {
+			Assert.assertEquals("Enrollment refused", e.getMessage());
+		}
+
+		// The other members are enrolled, and all registered members are saved in a single write
+		Assert.assertTrue(chain.getMember("user1").isEnrolled());
+		Assert.assertTrue(chain.getMember("user3").isEnrolled());
+		Member failed = chain.getMember("user2");
+		Assert.assertFalse(failed.isEnrolled());
+		Assert.assertEquals("secret-user2", failed.getEnrollmentSecret());
+		Assert.assertEquals(1, store.batches.size());
+		Assert.assertEquals(3, store.batches.get(0).size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMemberLoadFailure() {
+		chain.setKeyValStore(new MemoryKeyValStore() {
+			@Override
+			public synchronized String getValue(String name) {
+				throw new IllegalStateException("store unavailable");
+			}
+		});
+		chain.getMember("user1");
+	}
+}
@@ -0,0 +1,69 @@
+package org.hyperledger.fabric.sdk;
+
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.crypto.digests.SHA3Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+
+/**
+ * Compares the small-message crypto operations of {@link CryptoPrimitives}, which reuse per-thread engines,
+ * with the same operations done with a fresh engine lookup on every call.
+ * Not run as part of the test suite: run its main method with the test classpath.
+ */
+public class CryptoPrimitivesBenchmark {
+
+	private static final int WARMUP = 20000;
+	private static final int ITERATIONS = 200000;
+
+	public static void main(String[] args) throws Exception {
+		CryptoPrimitives crypto = new CryptoPrimitives("SHA3", 256);
+		SecureRandom random = new SecureRandom();
+		byte[] key = new byte[32];
+		random.nextBytes(key);
+		byte[] message = new byte[64];
+		random.nextBytes(message);
+
+		Cipher encrypt = Cipher.getInstance("AES/CBC/PKCS7Padding");
+		byte[] iv = new byte[16];
+		random.nextBytes(iv);
+		encrypt.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+		byte[] ciphertext = org.bouncycastle.util.Arrays.concatenate(iv, encrypt.doFinal(message));
+
+		run("calculateMac, new HMac per call", () -> {
+			HMac hmac = new HMac(new SHA3Digest(256));
+			hmac.init(new KeyParameter(key));
+			hmac.update(message, 0, message.length);
+			hmac.doFinal(new byte[32], 0);
+		});
+		run("calculateMac, pooled", () -> crypto.calculateMac(key, message));
+
+		run("aesCBCPKCS7Decrypt, Cipher.getInstance per call", () -> {
+			Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7Padding");
+			cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(ciphertext, 0, 16));
+			cipher.doFinal(ciphertext, 16, ciphertext.length - 16);
+		});
+		run("aesCBCPKCS7Decrypt, pooled", () -> crypto.aesCBCPKCS7Decrypt(key, ciphertext));
+	}
+
+	private interface Operation {
+		void run() throws Exception;
+	}
+
+	private static void run(String name, Operation operation) throws Exception {
+		for (int i = 0; i < WARMUP; i++) {
+			operation.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			operation.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%-50s %8d ns/op", name, elapsed / ITERATIONS));
+	}
+}
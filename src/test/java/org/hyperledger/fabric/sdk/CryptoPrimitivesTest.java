@@ -0,0 +1,67 @@
+package org.hyperledger.fabric.sdk;
+
+import java.security.KeyPair;
+
+import org.hyperledger.fabric.sdk.exception.CryptoException;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+import org.hyperledger.fabric.sdk.security.KeyPairPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CryptoPrimitivesTest {
+
+	private CryptoPrimitives crypto = new CryptoPrimitives("SHA3", 256);
+
+	@Test
+	public void testEciesEncryptDecrypt() throws CryptoException {
+		KeyPair keyPair = crypto.eciesKeyGen();
+		byte[] message = "hello".getBytes();
+
+		byte[] ciphertext = crypto.eciesEncrypt(keyPair.getPublic(), message);
+		Assert.assertArrayEquals(message, crypto.eciesDecrypt(keyPair, ciphertext));
+	}
+
+	@Test
+	public void testEciesEncryptAll() throws CryptoException {
+		KeyPair keyPair = crypto.eciesKeyGen();
+		byte[][] messages = new byte[][] {"chaincodeID".getBytes(), "payload".getBytes(), new byte[0]};
+
+		byte[][] ciphertexts = crypto.eciesEncryptAll(keyPair.getPublic(), messages);
+		Assert.assertEquals(messages.length, ciphertexts.length);
+		for (int i = 0; i < messages.length; i++) {
+			Assert.assertArrayEquals(messages[i], crypto.eciesDecrypt(keyPair, ciphertexts[i]));
+		}
+	}
+
+	@Test
+	public void testKeyPairPool() throws Exception {
+		KeyPairPool pool = crypto.getKeyPairPool();
+		pool.setDepth(4);
+		pool.prefill();
+		for (int i = 0; i < 100 && pool.size() < 4; i++) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals(4, pool.size());
+
+		KeyPair first = crypto.ecdsaKeyGen();
+		KeyPair second = crypto.eciesKeyGen();
+		Assert.assertNotEquals(first.getPublic(), second.getPublic());
+
+		// Without pooling, key pairs are generated inline
+		pool.setDepth(0);
+		Assert.assertEquals(0, pool.size());
+		Assert.assertNotNull(crypto.ecdsaKeyGen());
+		Assert.assertEquals(0, pool.size());
+		pool.setDepth(KeyPairPool.DEFAULT_DEPTH);
+	}
+
+	@Test
+	public void testKeyPairPoolFilledOnCreation() throws Exception {
+		// A pool starts filling as soon as it is created, before any key pair is taken
+		KeyPairPool pool = KeyPairPool.getPool("prime256v1");
+		for (int i = 0; i < 100 && pool.size() < KeyPairPool.DEFAULT_DEPTH; i++) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals(KeyPairPool.DEFAULT_DEPTH, pool.size());
+	}
+}
@@ -0,0 +1,61 @@
+package org.hyperledger.fabric.sdk;
+
+import java.nio.ByteBuffer;
+
+import org.hyperledger.fabric.sdk.helper.DirectBufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DirectBufferPoolTest {
+
+	@Test
+	public void testAcquire() {
+		DirectBufferPool pool = new DirectBufferPool();
+		ByteBuffer buffer = pool.acquire(300);
+		Assert.assertTrue(buffer.isDirect());
+		Assert.assertEquals(0, buffer.position());
+		Assert.assertEquals(300, buffer.limit());
+		Assert.assertEquals(512, buffer.capacity());
+
+		// Larger than a slab: a dedicated buffer
+		Assert.assertEquals(1 << 20, pool.acquire(1 << 20).capacity());
+	}
+
+	@Test
+	public void testReleaseAndReuse() {
+		DirectBufferPool pool = new DirectBufferPool();
+		ByteBuffer buffer = pool.acquire(100);
+		int free = pool.getFreeCount(100);
+		buffer.put(new byte[] {1, 2, 3});
+		pool.release(buffer);
+		Assert.assertEquals(free + 1, pool.getFreeCount(100));
+
+		// Released buffers are zeroed before they are reused
+		ByteBuffer reused = null;
+		for (int i = 0; i <= free; i++) {
+			ByteBuffer acquired = pool.acquire(100);
+			if (acquired == buffer) {
+				reused = acquired;
+			}
+		}
+		Assert.assertSame(buffer, reused);
+		Assert.assertEquals(0, pool.getFreeCount(100));
+		reused.clear();
+		for (int i = 0; i < reused.capacity(); i++) {
+			Assert.assertEquals(0, reused.get(i));
+		}
+	}
+
+	@Test
+	public void testMaxFreeBytes() {
+		DirectBufferPool pool = new DirectBufferPool(4096);
+		ByteBuffer[] buffers = new ByteBuffer[64];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = pool.acquire(256);
+		}
+		for (ByteBuffer buffer : buffers) {
+			pool.release(buffer);
+		}
+		Assert.assertEquals(4096 / 256, pool.getFreeCount(256));
+	}
+}
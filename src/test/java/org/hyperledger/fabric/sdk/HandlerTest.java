@@ -0,0 +1,716 @@
+package org.hyperledger.fabric.sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hyperledger.fabric.sdk.shim.ChaincodeBase;
+import org.hyperledger.fabric.sdk.shim.ChaincodeStub;
+import org.hyperledger.fabric.sdk.shim.Handler;
+import org.hyperledger.fabric.sdk.shim.NextStateInfo;
+import org.hyperledger.protos.Chaincode.ChaincodeInput;
+import org.hyperledger.protos.Chaincode.ChaincodeMessage;
+import org.hyperledger.protos.Chaincode.PutStateInfo;
+import org.hyperledger.protos.Chaincode.RangeQueryState;
+import org.hyperledger.protos.Chaincode.RangeQueryStateClose;
+import org.hyperledger.protos.Chaincode.RangeQueryStateKeyValue;
+import org.hyperledger.protos.Chaincode.RangeQueryStateNext;
+import org.hyperledger.protos.Chaincode.RangeQueryStateResponse;
+import org.hyperledger.protos.TableProto.Column;
+import org.hyperledger.protos.TableProto.ColumnDefinition;
+import org.hyperledger.protos.TableProto.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import io.grpc.stub.StreamObserver;
+
+public class HandlerTest {
+
+	private static final int RANGE_PAGE_SIZE = 2;
+
+	@Test
+	public void testQueryRejectedWhenOverloaded() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingChaincode chaincode = new BlockingChaincode(release);
+		chaincode.setMaxWorkerThreads(1);
+		chaincode.setMaxQueuedRequests(0);
+		RecordingStream stream = new RecordingStream();
+		Handler handler = readyHandler(stream, chaincode);
+
+		handler.receiveMessage(query("tx1"));
+		Assert.assertTrue(chaincode.started.await(10, TimeUnit.SECONDS));
+
+		// The only worker is busy and nothing may be queued
+		handler.receiveMessage(query("tx2"));
+		ChaincodeMessage rejected = stream.await(1);
+		Assert.assertEquals(ChaincodeMessage.Type.QUERY_ERROR, rejected.getType());
+		Assert.assertEquals("tx2", rejected.getTxid());
+
+		release.countDown();
+		ChaincodeMessage completed = stream.await(2);
+		Assert.assertEquals(ChaincodeMessage.Type.QUERY_COMPLETED, completed.getType());
+		Assert.assertEquals("tx1", completed.getTxid());
+		Assert.assertEquals("done", completed.getPayload().toStringUtf8());
+	}
+
+	@Test
+	public void testPoolBoundsFixedOnceCreated() {
+		BlockingChaincode chaincode = new BlockingChaincode(new CountDownLatch(0));
+		chaincode.setMaxWorkerThreads(2);
+		chaincode.getExecutor();
+		try {
+			chaincode.setMaxQueuedRequests(0);
+			Assert.fail("Queue bound changed after the executor was created");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals(ChaincodeBase.DEFAULT_MAX_QUEUED_REQUESTS, chaincode.getMaxQueuedRequests());
+		}
+	}
+
+	@Test
+	public void testConcurrentQueries() throws Exception {
+		int queries = 16;
+		StateChaincode chaincode = new StateChaincode(queries);
+		chaincode.setMaxWorkerThreads(queries);
+		StatePeer peer = new StatePeer();
+		for (int i = 0; i < queries; i++) {
+			peer.state.put("key" + i, "value" + i);
+		}
+		Handler handler = readyHandler(peer, chaincode);
+		peer.handler = handler;
+
+		for (int i = 0; i < queries; i++) {
+			handler.receiveMessage(query("tx" + i, "key" + i));
+		}
+
+		// Each query reads its own key, all of them at once, and gets its own answer
+		peer.await(queries * 2);
+		Map<String, String> results = new HashMap<>();
+		for (ChaincodeMessage message : peer.messages) {
+			if (message.getType() != ChaincodeMessage.Type.GET_STATE) {
+				Assert.assertEquals(ChaincodeMessage.Type.QUERY_COMPLETED, message.getType());
+				results.put(message.getTxid(), message.getPayload().toStringUtf8());
+			}
+		}
+		Assert.assertEquals(queries, results.size());
+		for (int i = 0; i < queries; i++) {
+			Assert.assertEquals("value" + i, results.get("tx" + i));
+		}
+	}
+
+	@Test
+	public void testGetStatesPipelined() throws Exception {
+		GetStatesChaincode chaincode = new GetStatesChaincode();
+		chaincode.setMaxPendingStateRequests(3);
+		RecordingStream peer = new RecordingStream();
+		Handler handler = readyHandler(peer, chaincode);
+
+		handler.receiveMessage(query("tx1", "a", "b", "a", "c", "d", "e"));
+
+		// Duplicate keys are read once, and only 3 requests are sent before a response arrives
+		peer.await(3);
+		Thread.sleep(100);
+		Assert.assertEquals(3, peer.messages.size());
+
+		for (int i = 0; i < 5; i++) {
+			ChaincodeMessage request = peer.await(i + 1);
+			Assert.assertEquals(ChaincodeMessage.Type.GET_STATE, request.getType());
+			Assert.assertEquals("tx1", request.getTxid());
+			handler.receiveMessage(ChaincodeMessage.newBuilder()
+					.setType(ChaincodeMessage.Type.RESPONSE)
+					.setTxid("tx1")
+					.setPayload(ByteString.copyFromUtf8(request.getPayload().toStringUtf8().toUpperCase()))
+					.build());
+		}
+
+		ChaincodeMessage completed = peer.await(6);
+		Assert.assertEquals(ChaincodeMessage.Type.QUERY_COMPLETED, completed.getType());
+		Assert.assertEquals("a=A,b=B,c=C,d=D,e=E", completed.getPayload().toStringUtf8());
+	}
+
+	@Test
+	public void testGetStatesError() throws Exception {
+		FailingChaincode chaincode = new FailingChaincode();
+		chaincode.setMaxPendingStateRequests(3);
+		RecordingStream peer = new RecordingStream();
+		Handler handler = readyHandler(peer, chaincode);
+
+		startTransaction(handler, "tx1", "getStates", "a", "b", "c");
+		ChaincodeMessage first = peer.await(1);
+		ChaincodeMessage third = peer.await(3);
+		handler.receiveMessage(response(first, ChaincodeMessage.Type.ERROR, "no such key"));
+
+		// The transaction only fails once the other requests are answered
+		Assert.assertNull(handler.nextState.poll(100, TimeUnit.MILLISECONDS));
+		handler.receiveMessage(response(peer.await(2), ChaincodeMessage.Type.RESPONSE, "B"));
+		handler.receiveMessage(response(third, ChaincodeMessage.Type.RESPONSE, "C"));
+		ChaincodeMessage error = endTransaction(handler);
+		Assert.assertEquals(ChaincodeMessage.Type.ERROR, error.getType());
+
+		// The ERROR of the chaincode is not mistaken for a response, and the handler is ready again
+		Assert.assertEquals("done", transaction(handler, "tx2", "noop"));
+	}
+
+	@Test
+	public void testRequestsFailedWhenTransactionEnds() throws Exception {
+		FailingChaincode chaincode = new FailingChaincode();
+		RecordingStream peer = new RecordingStream();
+		Handler handler = readyHandler(peer, chaincode);
+
+		// A request left outstanding fails when the transaction completes
+		Assert.assertEquals("done", transaction(handler, "tx1", "abandon"));
+		try {
+			chaincode.abandoned.get(10, TimeUnit.SECONDS);
+			Assert.fail("Abandoned request did not fail");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		// Its late responses are dropped
+		ChaincodeMessage request = peer.await(1);
+		handler.receiveMessage(response(request, ChaincodeMessage.Type.ERROR, "late"));
+		handler.receiveMessage(response(request, ChaincodeMessage.Type.RESPONSE, "late"));
+		Assert.assertEquals("done", transaction(handler, "tx2", "noop"));
+	}
+
+	@Test
+	public void testStateOverlay() throws Exception {
+		CounterChaincode chaincode = new CounterChaincode();
+		chaincode.setStateOverlay(true);
+		StatePeer peer = new StatePeer();
+		peer.state.put("counter", "5");
+		peer.state.put("scratch", "old");
+		Handler handler = readyHandler(peer, chaincode);
+		peer.handler = handler;
+
+		handler.receiveMessage(ChaincodeMessage.newBuilder()
+				.setType(ChaincodeMessage.Type.TRANSACTION)
+				.setTxid("tx1")
+				.setPayload(ChaincodeInput.newBuilder().addArgs(ByteString.copyFromUtf8("increment")).build().toByteString())
+				.build());
+		ChaincodeMessage completed = handler.nextState.take().message;
+		Assert.assertEquals(ChaincodeMessage.Type.COMPLETED, completed.getType());
+
+		// Reads see the buffered writes, and only the last write of each key reaches the peer, before COMPLETED
+		Assert.assertEquals("15,new", completed.getPayload().toStringUtf8());
+		Assert.assertEquals(1, peer.count(ChaincodeMessage.Type.GET_STATE));
+		Assert.assertEquals(2, peer.count(ChaincodeMessage.Type.PUT_STATE));
+		Assert.assertEquals(0, peer.count(ChaincodeMessage.Type.DEL_STATE));
+		Assert.assertEquals("15", peer.state.get("counter"));
+		Assert.assertEquals("new", peer.state.get("scratch"));
+	}
+
+	@Test
+	public void testStateOverlayWriteError() throws Exception {
+		FailingChaincode chaincode = new FailingChaincode();
+		chaincode.setStateOverlay(true);
+		chaincode.setMaxPendingStateRequests(3);
+		RecordingStream peer = new RecordingStream();
+		Handler handler = readyHandler(peer, chaincode);
+
+		// The buffered writes are flushed before the chaincode is invoked
+		startTransaction(handler, "tx1", "writeAndInvoke", "a", "b", "c");
+		ChaincodeMessage first = peer.await(1);
+		ChaincodeMessage third = peer.await(3);
+		Assert.assertEquals(ChaincodeMessage.Type.PUT_STATE, third.getType());
+		handler.receiveMessage(response(first, ChaincodeMessage.Type.ERROR, "write failed"));
+
+		// The transaction only fails once all writes are acknowledged, and the chaincode is not invoked
+		Assert.assertNull(handler.nextState.poll(100, TimeUnit.MILLISECONDS));
+		handler.receiveMessage(response(peer.await(2), ChaincodeMessage.Type.RESPONSE, ""));
+		handler.receiveMessage(response(third, ChaincodeMessage.Type.RESPONSE, ""));
+		Assert.assertEquals(ChaincodeMessage.Type.ERROR, endTransaction(handler).getType());
+		Assert.assertEquals(3, peer.messages.size());
+		Assert.assertEquals("done", transaction(handler, "tx2", "noop"));
+	}
+
+	@Test
+	public void testRangeQueryPaged() throws Exception {
+		RangeChaincode chaincode = new RangeChaincode();
+		StatePeer peer = new StatePeer();
+		for (int i = 9; i >= 0; i--) {
+			peer.state.put("key" + i, "value" + i);
+		}
+		Handler handler = readyHandler(peer, chaincode);
+		peer.handler = handler;
+
+		// All pages are read, in key order
+		handler.receiveMessage(query("tx1", "all"));
+		ChaincodeMessage completed = peer.await(1 + 3 + 1);
+		Assert.assertEquals(ChaincodeMessage.Type.QUERY_COMPLETED, completed.getType());
+		Assert.assertEquals("key1,key2,key3,key4,key5,key6,key7,key8", completed.getPayload().toStringUtf8());
+		Assert.assertEquals(3, peer.count(ChaincodeMessage.Type.RANGE_QUERY_STATE_NEXT));
+		Assert.assertTrue(peer.ranges.isEmpty());
+
+		// A stream only fetches the pages it consumes, and releases the iterator of the validator
+		handler.receiveMessage(query("tx2", "first"));
+		completed = peer.await(5 + 4);
+		Assert.assertEquals(ChaincodeMessage.Type.QUERY_COMPLETED, completed.getType());
+		Assert.assertEquals("key1,key2,key3", completed.getPayload().toStringUtf8());
+		Assert.assertEquals(4, peer.count(ChaincodeMessage.Type.RANGE_QUERY_STATE_NEXT));
+		Assert.assertEquals(1, peer.count(ChaincodeMessage.Type.RANGE_QUERY_STATE_CLOSE));
+		Assert.assertTrue(peer.ranges.isEmpty());
+	}
+
+	@Test
+	public void testTableSchemaCache() throws Exception {
+		TableChaincode chaincode = new TableChaincode();
+		StatePeer peer = new StatePeer();
+		Handler handler = readyHandler(peer, chaincode);
+		peer.handler = handler;
+
+		Assert.assertEquals("true", transaction(handler, "tx1", "create"));
+		Assert.assertEquals(1, tableReads(peer));
+
+		// The definition is read once for all the rows, of all the transactions
+		Assert.assertEquals("true", transaction(handler, "tx2", "insert", "alice", "bob"));
+		Assert.assertEquals("true", transaction(handler, "tx3", "insert", "carol"));
+		Assert.assertEquals(2, tableReads(peer));
+		Assert.assertEquals(4, peer.state.size());
+
+		// A deleted table is not found in the cache
+		Assert.assertEquals("true", transaction(handler, "tx4", "delete"));
+		Assert.assertEquals("true", transaction(handler, "tx5", "create"));
+		Assert.assertEquals(3, tableReads(peer));
+	}
+
+	@Test
+	public void testTableSchemaNotCachedByQueries() throws Exception {
+		TableChaincode chaincode = new TableChaincode();
+		StatePeer peer = new StatePeer();
+		Handler handler = readyHandler(peer, chaincode);
+		peer.handler = handler;
+		Assert.assertEquals("true", transaction(handler, "tx1", "create"));
+		Assert.assertEquals(1, tableReads(peer));
+
+		// Queries may read a committed definition that a transaction already changed, so they do not cache it
+		int sent = peer.sent();
+		handler.receiveMessage(query("tx2", "count"));
+		Assert.assertEquals("0", peer.await(sent + 3).getPayload().toStringUtf8());
+		handler.receiveMessage(query("tx3", "count"));
+		Assert.assertEquals("0", peer.await(sent + 6).getPayload().toStringUtf8());
+		Assert.assertEquals(3, tableReads(peer));
+
+		// A definition cached by a transaction is used by queries
+		Assert.assertEquals("true", transaction(handler, "tx4", "insert", "alice"));
+		Assert.assertEquals(4, tableReads(peer));
+		sent = peer.sent();
+		handler.receiveMessage(query("tx5", "count"));
+		Assert.assertEquals("1", peer.await(sent + 2).getPayload().toStringUtf8());
+		Assert.assertEquals(4, tableReads(peer));
+	}
+
+	private static String transaction(Handler handler, String txid, String function, String... args) throws Exception {
+		startTransaction(handler, txid, function, args);
+		ChaincodeMessage completed = endTransaction(handler);
+		Assert.assertEquals(ChaincodeMessage.Type.COMPLETED, completed.getType());
+		return completed.getPayload().toStringUtf8();
+	}
+
+	private static void startTransaction(Handler handler, String txid, String function, String... args) throws Exception {
+		ChaincodeInput.Builder input = ChaincodeInput.newBuilder().addArgs(ByteString.copyFromUtf8(function));
+		for (String arg : args) {
+			input.addArgs(ByteString.copyFromUtf8(arg));
+		}
+		handler.receiveMessage(ChaincodeMessage.newBuilder()
+				.setType(ChaincodeMessage.Type.TRANSACTION)
+				.setTxid(txid)
+				.setPayload(input.build().toByteString())
+				.build());
+	}
+
+	/**
+	 * Wait for the COMPLETED or ERROR message ending a transaction, and handle it as the chaincode loop does.
+	 */
+	private static ChaincodeMessage endTransaction(Handler handler) throws Exception {
+		NextStateInfo next = handler.nextState.poll(10, TimeUnit.SECONDS);
+		Assert.assertNotNull("Timed out waiting for the end of the transaction", next);
+		handler.handleMessage(next.message);
+		return next.message;
+	}
+
+	private static ChaincodeMessage response(ChaincodeMessage request, ChaincodeMessage.Type type, String payload) {
+		return ChaincodeMessage.newBuilder()
+				.setType(type)
+				.setTxid(request.getTxid())
+				.setPayload(ByteString.copyFromUtf8(payload))
+				.build();
+	}
+
+	private static int tableReads(StatePeer peer) {
+		int count = 0;
+		synchronized (peer) {
+			for (ChaincodeMessage message : peer.messages) {
+				if (message.getType() == ChaincodeMessage.Type.GET_STATE
+						&& message.getPayload().toStringUtf8().equals("5users")) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	static Handler readyHandler(RecordingStream stream, ChaincodeBase chaincode) throws Exception {
+		Handler handler = new Handler(stream, chaincode);
+		handler.receiveMessage(ChaincodeMessage.newBuilder().setType(ChaincodeMessage.Type.REGISTERED).build());
+		handler.receiveMessage(ChaincodeMessage.newBuilder().setType(ChaincodeMessage.Type.READY).build());
+		return handler;
+	}
+
+	static ChaincodeMessage query(String txid, String... args) {
+		ChaincodeInput.Builder input = ChaincodeInput.newBuilder().addArgs(ByteString.copyFromUtf8("query"));
+		for (String arg : args) {
+			input.addArgs(ByteString.copyFromUtf8(arg));
+		}
+		return ChaincodeMessage.newBuilder()
+				.setType(ChaincodeMessage.Type.QUERY)
+				.setTxid(txid)
+				.setPayload(input.build().toByteString())
+				.build();
+	}
+
+	/**
+	 * Records the messages the handler sends to the peer.
+	 */
+	static class RecordingStream implements StreamObserver<ChaincodeMessage> {
+		final List<ChaincodeMessage> messages = new ArrayList<>();
+
+		@Override
+		public synchronized void onNext(ChaincodeMessage message) {
+			messages.add(message);
+			notifyAll();
+		}
+
+		@Override
+		public void onError(Throwable t) {
+		}
+
+		@Override
+		public void onCompleted() {
+		}
+
+		synchronized int sent() {
+			return messages.size();
+		}
+
+		/**
+		 * Wait until count messages were sent, and return the last one.
+		 */
+		synchronized ChaincodeMessage await(int count) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+			while (messages.size() < count) {
+				long remaining = deadline - System.currentTimeMillis();
+				Assert.assertTrue("Timed out waiting for message " + count, remaining > 0);
+				wait(remaining);
+			}
+			return messages.get(count - 1);
+		}
+	}
+
+	/**
+	 * Answers the GET_STATE requests of the handler from a map.
+	 */
+	static class StatePeer extends RecordingStream {
+		final Map<String, String> state = new ConcurrentHashMap<>();
+		final Map<String, Iterator<Map.Entry<String, String>>> ranges = new ConcurrentHashMap<>();
+		volatile Handler handler;
+
+		private ByteString page(String id) {
+			Iterator<Map.Entry<String, String>> range = ranges.get(id);
+			RangeQueryStateResponse.Builder page = RangeQueryStateResponse.newBuilder().setID(id);
+			while (range.hasNext() && page.getKeysAndValuesCount() < RANGE_PAGE_SIZE) {
+				Map.Entry<String, String> entry = range.next();
+				page.addKeysAndValues(RangeQueryStateKeyValue.newBuilder()
+						.setKey(entry.getKey())
+						.setValue(ByteString.copyFromUtf8(entry.getValue())));
+			}
+			page.setHasMore(range.hasNext());
+			if (!range.hasNext()) {
+				ranges.remove(id);
+			}
+			return page.build().toByteString();
+		}
+
+		@Override
+		public void onNext(ChaincodeMessage message) {
+			super.onNext(message);
+			ByteString payload;
+			try {
+				switch (message.getType()) {
+				case GET_STATE:
+					String value = state.get(message.getPayload().toStringUtf8());
+					payload = ByteString.copyFromUtf8(value == null ? "" : value);
+					break;
+				case PUT_STATE:
+					PutStateInfo put = PutStateInfo.parseFrom(message.getPayload());
+					state.put(put.getKey(), put.getValue().toStringUtf8());
+					payload = ByteString.EMPTY;
+					break;
+				case DEL_STATE:
+					state.remove(message.getPayload().toStringUtf8());
+					payload = ByteString.EMPTY;
+					break;
+				case RANGE_QUERY_STATE:
+					RangeQueryState range = RangeQueryState.parseFrom(message.getPayload());
+					String id = "iterator" + ranges.size();
+					ranges.put(id, new TreeMap<>(state).subMap(range.getStartKey(), range.getEndKey())
+							.entrySet().iterator());
+					payload = page(id);
+					break;
+				case RANGE_QUERY_STATE_NEXT:
+					payload = page(RangeQueryStateNext.parseFrom(message.getPayload()).getID());
+					break;
+				case RANGE_QUERY_STATE_CLOSE:
+					ranges.remove(RangeQueryStateClose.parseFrom(message.getPayload()).getID());
+					payload = RangeQueryStateResponse.getDefaultInstance().toByteString();
+					break;
+				default:
+					return;
+				}
+				handler.receiveMessage(ChaincodeMessage.newBuilder()
+						.setType(ChaincodeMessage.Type.RESPONSE)
+						.setTxid(message.getTxid())
+						.setPayload(payload)
+						.build());
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		synchronized int count(ChaincodeMessage.Type type) {
+			int count = 0;
+			for (ChaincodeMessage message : messages) {
+				if (message.getType() == type) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Reads the state of its argument once all queries are running.
+	 */
+	static class StateChaincode extends ChaincodeBase {
+		private final CyclicBarrier barrier;
+
+		StateChaincode(int parties) {
+			this.barrier = new CyclicBarrier(parties);
+		}
+
+		@Override
+		public String run(ChaincodeStub stub, String function, String[] args) {
+			return null;
+		}
+
+		@Override
+		public String query(ChaincodeStub stub, String function, String[] args) {
+			try {
+				barrier.await(10, TimeUnit.SECONDS);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			return stub.getState(args[0]);
+		}
+
+		@Override
+		public String getChaincodeID() {
+			return "test";
+		}
+	}
+
+	static class GetStatesChaincode extends ChaincodeBase {
+
+		@Override
+		public String run(ChaincodeStub stub, String function, String[] args) {
+			return null;
+		}
+
+		@Override
+		public String query(ChaincodeStub stub, String function, String[] args) {
+			StringBuilder result = new StringBuilder();
+			for (Map.Entry<String, String> state : stub.getStates(Arrays.asList(args)).entrySet()) {
+				if (result.length() > 0) {
+					result.append(',');
+				}
+				result.append(state.getKey()).append('=').append(state.getValue());
+			}
+			return result.toString();
+		}
+
+		@Override
+		public String getChaincodeID() {
+			return "test";
+		}
+	}
+
+	static class FailingChaincode extends ChaincodeBase {
+		volatile CompletableFuture<String> abandoned;
+
+		@Override
+		public String run(ChaincodeStub stub, String function, String[] args) {
+			switch (function) {
+			case "getStates":
+				stub.getStates(Arrays.asList(args));
+				break;
+			case "abandon":
+				abandoned = stub.getStateAsync("a");
+				break;
+			case "writeAndInvoke":
+				for (String key : args) {
+					stub.putState(key, "value");
+				}
+				stub.invokeRawChaincode("other", "run", Collections.emptyList());
+				break;
+			default:
+				break;
+			}
+			return "done";
+		}
+
+		@Override
+		public String query(ChaincodeStub stub, String function, String[] args) {
+			return null;
+		}
+
+		@Override
+		public String getChaincodeID() {
+			return "test";
+		}
+	}
+
+	static class CounterChaincode extends ChaincodeBase {
+
+		@Override
+		public String run(ChaincodeStub stub, String function, String[] args) {
+			for (int i = 0; i < 10; i++) {
+				stub.putState("counter", Integer.toString(Integer.parseInt(stub.getState("counter")) + 1));
+			}
+			stub.delState("scratch");
+			Assert.assertEquals("", stub.getState("scratch"));
+			stub.putState("scratch", "new");
+			return stub.getState("counter") + "," + stub.getState("scratch");
+		}
+
+		@Override
+		public String query(ChaincodeStub stub, String function, String[] args) {
+			return null;
+		}
+
+		@Override
+		public String getChaincodeID() {
+			return "test";
+		}
+	}
+
+	static class RangeChaincode extends ChaincodeBase {
+
+		@Override
+		public String run(ChaincodeStub stub, String function, String[] args) {
+			return null;
+		}
+
+		@Override
+		public String query(ChaincodeStub stub, String function, String[] args) {
+			if (args[0].equals("all")) {
+				return String.join(",", stub.rangeQueryState("key1", "key9").keySet());
+			}
+			try (Stream<RangeQueryStateKeyValue> range = stub.rangeQueryStream("key1", "key9")) {
+				return range.limit(3).map(RangeQueryStateKeyValue::getKey).collect(Collectors.joining(","));
+			}
+		}
+
+		@Override
+		public String getChaincodeID() {
+			return "test";
+		}
+	}
+
+	static class TableChaincode extends ChaincodeBase {
+
+		@Override
+		public String run(ChaincodeStub stub, String function, String[] args) {
+			try {
+				switch (function) {
+				case "create":
+					return Boolean.toString(stub.createTable("users", Arrays.asList(
+							ColumnDefinition.newBuilder().setName("name").setType(ColumnDefinition.Type.STRING).setKey(true).build(),
+							ColumnDefinition.newBuilder().setName("age").setType(ColumnDefinition.Type.INT32).build())));
+				case "insert":
+					boolean inserted = true;
+					for (String name : args) {
+						inserted &= stub.insertRow("users", Row.newBuilder()
+								.addColumns(Column.newBuilder().setString(name))
+								.addColumns(Column.newBuilder().setInt32(name.length()))
+								.build());
+					}
+					return Boolean.toString(inserted);
+				case "delete":
+					return Boolean.toString(stub.deleteTable("users"));
+				default:
+					return null;
+				}
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public String query(ChaincodeStub stub, String function, String[] args) {
+			try {
+				return Integer.toString(stub.getRows("users", Collections.emptyList()).size());
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public String getChaincodeID() {
+			return "test";
+		}
+	}
+
+	static class BlockingChaincode extends ChaincodeBase {
+		final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch release;
+
+		BlockingChaincode(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public String run(ChaincodeStub stub, String function, String[] args) {
+			return null;
+		}
+
+		@Override
+		public String query(ChaincodeStub stub, String function, String[] args) {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			return "done";
+		}
+
+		@Override
+		public String getChaincodeID() {
+			return "test";
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package org.hyperledger.fabric.sdk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogKeyValStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+
+	@Before
+	public void init() throws IOException {
+		directory = folder.newFolder("keyvalstore");
+	}
+
+	@Test
+	public void testSetAndGetValue() throws IOException {
+		LogKeyValStore store = new LogKeyValStore(directory.getAbsolutePath());
+		Assert.assertNull(store.getValue("member.user1"));
+		store.setValue("member.user1", "state1");
+		store.setValue("member.user1", "state2");
+		Assert.assertEquals("state2", store.getValue("member.user1"));
+		store.setValue("member.user1", null);
+		Assert.assertNull(store.getValue("member.user1"));
+		store.close();
+	}
+
+	@Test
+	public void testRecover() throws IOException {
+		LogKeyValStore store = new LogKeyValStore(directory.getAbsolutePath());
+		Map<String, String> values = new HashMap<>();
+		values.put("member.user1", "state1");
+		values.put("member.user2", "state2");
+		store.setValues(values);
+		store.setValue("member.user3", "state3");
+		store.compact();
+		store.setValue("member.user2", "state2bis");
+		store.close();
+
+		store = new LogKeyValStore(directory.getAbsolutePath());
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+		Assert.assertEquals("state2bis", store.getValue("member.user2"));
+		Assert.assertEquals("state3", store.getValue("member.user3"));
+		store.close();
+	}
+
+	@Test
+	public void testRecoverTornWrite() throws IOException {
+		LogKeyValStore store = new LogKeyValStore(directory.getAbsolutePath());
+		store.setValue("member.user1", "state1");
+		store.setValue("member.user2", "state2");
+		store.close();
+
+		// Simulate a crash in the middle of the last append
+		File log = new File(directory, "log.0");
+		try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+			file.setLength(file.length() - 3);
+		}
+
+		store = new LogKeyValStore(directory.getAbsolutePath());
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+		Assert.assertNull(store.getValue("member.user2"));
+		store.setValue("member.user2", "state2");
+		store.close();
+
+		store = new LogKeyValStore(directory.getAbsolutePath());
+		Assert.assertEquals("state2", store.getValue("member.user2"));
+		store.close();
+	}
+
+	@Test
+	public void testBackgroundCompaction() throws Exception {
+		LogKeyValStore store = new LogKeyValStore(directory.getAbsolutePath());
+		store.setCompactionThreshold(1024);
+		for (int i = 0; i < 1000; i++) {
+			store.setValue("member.user" + (i % 10), "state" + i);
+		}
+		for (int i = 0; i < 100 && !new File(directory, "checkpoint").exists(); i++) {
+			Thread.sleep(50);
+		}
+		Assert.assertTrue(new File(directory, "checkpoint").exists());
+		// Waits for the background compaction to be done
+		store.compact();
+		store.close();
+
+		store = new LogKeyValStore(directory.getAbsolutePath());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals("state" + (990 + i), store.getValue("member.user" + i));
+		}
+		store.close();
+	}
+
+	@Test
+	public void testFailedWriteNotApplied() throws IOException {
+		LogKeyValStore store = new LogKeyValStore(directory.getAbsolutePath());
+		store.setValue("member.user1", "state1");
+		store.close();
+
+		try {
+			store.setValue("member.user1", "state2");
+			Assert.fail("Write to a closed store did not fail");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IOException);
+		}
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+
+		store = new LogKeyValStore(directory.getAbsolutePath());
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+		store.close();
+	}
+}
@@ -0,0 +1,88 @@
+package org.hyperledger.fabric.sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemberPoolTest {
+
+	private static final int BATCH_SIZE = 10;
+
+	private Member alice;
+	private Member bob;
+	private Member carol;
+
+	@Before
+	public void init() {
+		StubMemberServices memberServices = new StubMemberServices();
+		memberServices.crypto = new CryptoPrimitives("SHA3", 256);
+		Chain chain = new Chain("chain1");
+		chain.setMemberServices(memberServices);
+		chain.cryptoPrimitives = memberServices.crypto;
+		chain.setPreFetchMode(false);
+		chain.setTCertBatchSize(BATCH_SIZE);
+		alice = newMember(chain, "alice");
+		bob = newMember(chain, "bob");
+		carol = newMember(chain, "carol");
+	}
+
+	private static Member newMember(Chain chain, String name) {
+		Member member = new Member(name, chain);
+		member.setEnrollment(new Enrollment());
+		return member;
+	}
+
+	@Test
+	public void testMostTCertsAvailable() {
+		bob.getNextTCert(null);
+		MemberPool pool = new MemberPool(Arrays.asList(alice, bob, carol), MemberPool.SelectionPolicy.MOST_TCERTS_AVAILABLE);
+
+		// The member with tcerts is chosen whatever its transactions in flight
+		Assert.assertEquals(bob, select(pool));
+		Assert.assertEquals(bob, select(pool));
+		Assert.assertEquals(2, pool.getInFlight(bob));
+
+		// Ties on tcerts are broken by the fewest transactions in flight
+		carol.getNextTCert(null);
+		Assert.assertEquals(bob.getTCertCount(null), carol.getTCertCount(null));
+		Assert.assertEquals(carol, select(pool));
+	}
+
+	@Test
+	public void testLeastInFlight() {
+		alice.getNextTCert(null);
+		MemberPool pool = new MemberPool(Arrays.asList(alice, bob, carol), MemberPool.SelectionPolicy.LEAST_IN_FLIGHT);
+
+		// Among members without transactions in flight, the one with the most tcerts
+		Assert.assertEquals(alice, select(pool));
+		List<Member> selected = new ArrayList<>();
+		selected.add(select(pool));
+		selected.add(select(pool));
+		Assert.assertTrue(selected.containsAll(Arrays.asList(bob, carol)));
+		Assert.assertEquals(1, pool.getInFlight(alice));
+		Assert.assertEquals(1, pool.getInFlight(bob));
+		Assert.assertEquals(1, pool.getInFlight(carol));
+	}
+
+	@Test
+	public void testTiesBrokenInTurn() {
+		MemberPool pool = new MemberPool(Arrays.asList(alice, bob, carol), MemberPool.SelectionPolicy.LEAST_IN_FLIGHT);
+		List<Member> selected = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			int index = pool.selectMember(null);
+			selected.add(pool.getMembers().get(index));
+			pool.release(index);
+		}
+		Assert.assertEquals(Arrays.asList(alice, bob, carol, alice, bob, carol), selected);
+		Assert.assertEquals(0, pool.getInFlight(alice));
+	}
+
+	private static Member select(MemberPool pool) {
+		return pool.getMembers().get(pool.selectMember(null));
+	}
+}
@@ -0,0 +1,93 @@
+package org.hyperledger.fabric.sdk;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.interfaces.ECPrivateKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+import org.hyperledger.protos.Ca;
+import org.hyperledger.protos.Ca.CertSet;
+import org.hyperledger.protos.Ca.TCertCreateSetResp;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+public class MemberServicesImplTest {
+
+	private static final String TCERT_ENC_TCERT_INDEX = "1.2.3.4.5.6.7";
+
+	@Test
+	public void testTCertBatchDerivation() throws Exception {
+		MemberServicesImpl memberServices = new MemberServicesImpl("grpc://localhost:7054", null);
+		CryptoPrimitives crypto = memberServices.getCrypto();
+
+		KeyPair enrollKeyPair = crypto.ecdsaKeyGen();
+		Enrollment enrollment = new Enrollment();
+		enrollment.setKey(Hex.toHexString(enrollKeyPair.getPrivate().getEncoded()));
+		GetTCertBatchRequest req = new GetTCertBatchRequest("user", enrollment, 32, null);
+
+		byte[] kdfKey = crypto.generateNonce();
+		byte[] encryptKey = Arrays.copyOfRange(crypto.calculateMac(kdfKey, new byte[] {1}), 0, 32);
+		byte[] expansionKey = crypto.calculateMac(kdfKey, new byte[] {2});
+
+		// A batch large enough to be split across threads, with an unparsable certificate in the middle
+		CertSet.Builder certs = CertSet.newBuilder().setKey(ByteString.copyFrom(kdfKey));
+		List<byte[]> indexes = new ArrayList<>();
+		for (int i = 0; i < 32; i++) {
+			byte[] index = BigInteger.valueOf(i + 1).toByteArray();
+			indexes.add(index);
+			certs.addCerts(Ca.TCert.newBuilder().setCert(ByteString.copyFrom(certificate(crypto, encryptKey, index, i))));
+			if (i == 15) {
+				certs.addCerts(Ca.TCert.newBuilder().setCert(ByteString.copyFrom(new byte[] {0x30, 0x00})));
+			}
+		}
+		TCertCreateSetResp resp = TCertCreateSetResp.newBuilder().setCerts(certs).build();
+
+		List<TCert> tcerts = memberServices.processTCertBatch(req, resp);
+
+		// Same keys, in the same order, as deriving the certificates one after the other
+		ECPrivateKey enrollKey = (ECPrivateKey) enrollKeyPair.getPrivate();
+		BigInteger n = enrollKey.getParams().getOrder();
+		Assert.assertEquals(32, tcerts.size());
+		for (int i = 0; i < 32; i++) {
+			BigInteger k = new BigInteger(1, crypto.calculateMac(expansionKey, indexes.get(i)))
+					.mod(n.subtract(BigInteger.ONE)).add(BigInteger.ONE);
+			BigInteger expected = enrollKey.getS().add(k).mod(n);
+			Assert.assertEquals(expected, ((ECPrivateKey) tcerts.get(i).getPrivateKey()).getS());
+			Assert.assertEquals(i, crypto.bytesToCertificate(new java.io.ByteArrayInputStream(tcerts.get(i).getCert()))
+					.getSerialNumber().intValue() - 1);
+		}
+	}
+
+	// bcpkix is not available, so the certificates are built with the deprecated bcprov generator
+	@SuppressWarnings("deprecation")
+	private byte[] certificate(CryptoPrimitives crypto, byte[] encryptKey, byte[] index, int serial) throws Exception {
+		byte[] iv = crypto.generateIV();
+		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(encryptKey, "AES"), new IvParameterSpec(iv));
+		byte[] indexCT = org.bouncycastle.util.Arrays.concatenate(iv, cipher.doFinal(index));
+
+		KeyPair keyPair = crypto.ecdsaKeyGen();
+		org.bouncycastle.x509.X509V3CertificateGenerator generator = new org.bouncycastle.x509.X509V3CertificateGenerator();
+		generator.setSerialNumber(BigInteger.valueOf(serial + 1));
+		generator.setIssuerDN(new X500Principal("CN=tca"));
+		generator.setSubjectDN(new X500Principal("CN=user"));
+		generator.setNotBefore(new Date(System.currentTimeMillis() - 60000));
+		generator.setNotAfter(new Date(System.currentTimeMillis() + 3600000));
+		generator.setPublicKey(keyPair.getPublic());
+		generator.setSignatureAlgorithm("SHA256withECDSA");
+		generator.addExtension(TCERT_ENC_TCERT_INDEX, false, indexCT);
+		return generator.generate(keyPair.getPrivate(), "BC").getEncoded();
+	}
+}
@@ -0,0 +1,83 @@
+package org.hyperledger.fabric.sdk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+
+/**
+ * Compares the save and restore of member state in the current protobuf format with the
+ * legacy hex encoded Java serialization, and prints the size of the stored state in both formats.
+ * Not run as part of the test suite: run its main method with the test classpath.
+ */
+public class MemberStateBenchmark {
+
+	private static final int WARMUP = 20000;
+	private static final int ITERATIONS = 100000;
+
+	public static void main(String[] args) throws Exception {
+		MemoryKeyValStore store = new MemoryKeyValStore();
+		Chain chain = new Chain("chain1");
+		chain.setKeyValStore(store);
+
+		// A member with keys and certificate of realistic sizes
+		CryptoPrimitives crypto = new CryptoPrimitives("SHA3", 256);
+		Member member = new Member("user1", chain);
+		member.setRoles(new ArrayList<>(Arrays.asList("client")));
+		member.setAffiliation("bank_a");
+		member.setEnrollmentSecret("FKJhyNBpSdOo");
+		Enrollment enrollment = new Enrollment();
+		enrollment.setKey(Hex.toHexString(crypto.ecdsaKeyGen().getPrivate().getEncoded()));
+		byte[] cert = new byte[600];
+		Arrays.fill(cert, (byte) 0x30);
+		enrollment.setCert(Hex.toHexString(cert));
+		enrollment.setChainKey(Hex.toHexString(crypto.ecdsaKeyGen().getPublic().getEncoded()));
+		member.setEnrollment(enrollment);
+
+		String legacy = serializeLegacy(member);
+		member.saveState();
+		String current = store.getValue("member.user1");
+		System.out.println(String.format("%-50s %8d chars", "state size, legacy", legacy.length()));
+		System.out.println(String.format("%-50s %8d chars", "state size, protobuf", current.length()));
+
+		run("save, legacy", () -> store.setValue("member.user1", serializeLegacy(member)));
+		run("save, protobuf", member::saveState);
+
+		Member restored = new Member("user1", chain);
+		run("restore, legacy", () -> {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(Hex.decode(legacy)));
+			ois.readObject();
+		});
+		store.setValue("member.user1", current);
+		run("restore, protobuf", restored::restoreState);
+	}
+
+	private static String serializeLegacy(Member member) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(member);
+		oos.flush();
+		return Hex.toHexString(bos.toByteArray());
+	}
+
+	private interface Operation {
+		void run() throws Exception;
+	}
+
+	private static void run(String name, Operation operation) throws Exception {
+		for (int i = 0; i < WARMUP; i++) {
+			operation.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			operation.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%-50s %8d ns/op", name, elapsed / ITERATIONS));
+	}
+}
@@ -0,0 +1,83 @@
+package org.hyperledger.fabric.sdk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemberStateTest {
+
+	private MemoryKeyValStore store;
+	private Chain chain;
+
+	@Before
+	public void init() {
+		store = new MemoryKeyValStore();
+		chain = new Chain("chain1");
+		chain.setKeyValStore(store);
+	}
+
+	@Test
+	public void testSaveAndRestoreState() {
+		Member member = newMember();
+		member.saveState();
+		Assert.assertFalse(store.getValue("member.user1").startsWith(Hex.toHexString(new byte[] {(byte) 0xac, (byte) 0xed})));
+
+		Member restored = new Member("user1", chain);
+		restored.restoreState();
+		assertSameState(member, restored);
+	}
+
+	@Test
+	public void testMigrateLegacyState() throws Exception {
+		Member member = newMember();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(member);
+		oos.flush();
+		String legacy = Hex.toHexString(bos.toByteArray());
+		store.setValue("member.user1", legacy);
+
+		Member restored = new Member("user1", chain);
+		restored.restoreState();
+		assertSameState(member, restored);
+
+		// The state is saved again in the current format, which is smaller
+		String migrated = store.getValue("member.user1");
+		Assert.assertNotEquals(legacy, migrated);
+		Assert.assertTrue(migrated.length() < legacy.length());
+		Member again = new Member("user1", chain);
+		again.restoreState();
+		assertSameState(member, again);
+	}
+
+	private Member newMember() {
+		Member member = new Member("user1", chain);
+		member.setRoles(new ArrayList<>(Arrays.asList("client", "auditor")));
+		member.setAffiliation("bank_a");
+		member.setEnrollmentSecret("secret");
+		Enrollment enrollment = new Enrollment();
+		enrollment.setKey("0a0b");
+		enrollment.setCert("0c0d");
+		enrollment.setChainKey("0e0f");
+		member.setEnrollment(enrollment);
+		return member;
+	}
+
+	private static void assertSameState(Member expected, Member actual) {
+		Assert.assertEquals(expected.getName(), actual.getName());
+		Assert.assertEquals(expected.getRoles(), actual.getRoles());
+		Assert.assertEquals(expected.getAccount(), actual.getAccount());
+		Assert.assertEquals(expected.getAffiliation(), actual.getAffiliation());
+		Assert.assertEquals(expected.getEnrollmentSecret(), actual.getEnrollmentSecret());
+		Assert.assertEquals(expected.getEnrollment().getKey(), actual.getEnrollment().getKey());
+		Assert.assertEquals(expected.getEnrollment().getCert(), actual.getEnrollment().getCert());
+		Assert.assertEquals(expected.getEnrollment().getChainKey(), actual.getEnrollment().getChainKey());
+		Assert.assertNull(actual.getEnrollment().getQueryStateKey());
+	}
+}
@@ -0,0 +1,36 @@
+package org.hyperledger.fabric.sdk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory key value store shared by the tests, which counts reads, records the batches written with
+ * setValues, and can be made to fail the next batches.
+ */
+class MemoryKeyValStore implements KeyValStore {
+	final Map<String, String> values = new HashMap<>();
+	final List<Map<String, String>> batches = new ArrayList<>();
+	int gets;
+	int failures;
+
+	public synchronized String getValue(String name) {
+		gets++;
+		return values.get(name);
+	}
+
+	public synchronized void setValue(String name, String value) {
+		values.put(name, value);
+	}
+
+	@Override
+	public synchronized void setValues(Map<String, String> values) {
+		if (failures > 0) {
+			failures--;
+			throw new IllegalStateException("disk full");
+		}
+		batches.add(new HashMap<>(values));
+		this.values.putAll(values);
+	}
+}
@@ -0,0 +1,72 @@
+package org.hyperledger.fabric.sdk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.hyperledger.fabric.sdk.helper.ParallelGzipOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelGzipOutputStreamTest {
+
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		byte[] input = newInput(BLOCK_SIZE * 10 + 123);
+		Assert.assertArrayEquals(input, gunzip(gzip(input, 4)));
+	}
+
+	@Test
+	public void testEmptyInput() throws IOException {
+		Assert.assertArrayEquals(new byte[0], gunzip(gzip(new byte[0], 4)));
+	}
+
+	@Test
+	public void testDeterministicOutput() throws IOException {
+		byte[] input = newInput(BLOCK_SIZE * 5);
+		Assert.assertArrayEquals(gzip(input, 1), gzip(input, 8));
+	}
+
+	private static byte[] newInput(int size) {
+		// Compressible, with repetitions across blocks
+		Random random = new Random(42);
+		byte[] words = new byte[4096];
+		random.nextBytes(words);
+		byte[] input = new byte[size];
+		for (int i = 0; i < size; i++) {
+			input[i] = words[random.nextInt(64) * 64 + i % 64];
+		}
+		return input;
+	}
+
+	private static byte[] gzip(byte[] input, int threads) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, Deflater.DEFAULT_COMPRESSION,
+					BLOCK_SIZE, executor, threads)) {
+				// Odd sized writes, across block boundaries
+				for (int off = 0; off < input.length; off += 1000) {
+					gzip.write(input, off, Math.min(1000, input.length - off));
+				}
+			}
+			return out.toByteArray();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static byte[] gunzip(byte[] data) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+}
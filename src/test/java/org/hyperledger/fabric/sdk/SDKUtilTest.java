@@ -14,14 +14,28 @@
 
 package org.hyperledger.fabric.sdk;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
 import org.bouncycastle.crypto.digests.SHA3Digest;
+import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
+import org.hyperledger.fabric.sdk.helper.DeploymentPackageCache;
+import org.hyperledger.fabric.sdk.helper.DirectoryHashCache;
 import org.hyperledger.fabric.sdk.helper.SDKUtil;
 import org.junit.Assert;
 import org.junit.Test;
@@ -75,4 +89,183 @@ public class SDKUtilTest {
 		Assert.assertNotNull(data);
 		Assert.assertTrue(data.length > 0);
 	}
+
+	@Test
+	public void testGenerateTarGzWithExtraEntries() throws IOException {
+		File dir = Files.createTempDirectory("chaincode").toFile();
+		try {
+			Files.write(new File(dir, "Dockerfile").toPath(), "on disk".getBytes());
+			new File(dir, "src").mkdir();
+			Files.write(new File(dir, "src/main.go").toPath(), "package main".getBytes());
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			SDKUtil.generateTarGz(dir, out, Collections.singletonMap("Dockerfile", "generated".getBytes()));
+
+			Map<String, String> entries = readTarGz(out.toByteArray());
+			Assert.assertEquals(2, entries.size());
+			Assert.assertEquals("package main", entries.get("src/main.go"));
+			Assert.assertEquals("generated", entries.get("Dockerfile"));
+			// The source directory is left untouched
+			Assert.assertEquals("on disk", new String(Files.readAllBytes(new File(dir, "Dockerfile").toPath())));
+		} finally {
+			SDKUtil.deleteFileOrDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testGenerateTarGzWriteError() throws IOException {
+		File dir = Files.createTempDirectory("chaincode").toFile();
+		try {
+			Files.write(new File(dir, "a.go").toPath(), "package a".getBytes());
+			// Fails once the tar archive is finished, when the gzip trailer is written on close
+			OutputStream failing = new OutputStream() {
+				private boolean flushed;
+
+				@Override
+				public void write(int b) throws IOException {
+					if (flushed) {
+						throw new IOException("disk full");
+					}
+				}
+
+				@Override
+				public void flush() {
+					flushed = true;
+				}
+			};
+			try {
+				SDKUtil.generateTarGz(dir, failing, Collections.emptyMap());
+				Assert.fail("Write error was not reported");
+			} catch (IOException e) {
+				// Expected
+			}
+		} finally {
+			SDKUtil.deleteFileOrDirectory(dir);
+		}
+	}
+
+	private static Map<String, String> readTarGz(byte[] data) throws IOException {
+		Map<String, String> entries = new HashMap<>();
+		try (TarArchiveInputStream in = new TarArchiveInputStream(new GzipCompressorInputStream(new ByteArrayInputStream(data)))) {
+			TarArchiveEntry entry;
+			while ((entry = in.getNextTarEntry()) != null) {
+				entries.put(entry.getName(), new String(IOUtils.toByteArray(in)));
+			}
+		}
+		return entries;
+	}
+
+	@Test
+	public void testGenerateDirectoryHashWithCache() throws IOException {
+		File dir = Files.createTempDirectory("chaincode").toFile();
+		File cacheDir = Files.createTempDirectory("cache").toFile();
+		try {
+			new File(dir, "src").mkdir();
+			Files.write(new File(dir, "src/a.go").toPath(), "package a".getBytes());
+			Files.write(new File(dir, "src/b.go").toPath(), "package b".getBytes());
+			// Files modified just before they are hashed are not cached
+			long anHourAgo = System.currentTimeMillis() - 3600000;
+			new File(dir, "src/a.go").setLastModified(anHourAgo);
+			new File(dir, "src/b.go").setLastModified(anHourAgo);
+			DirectoryHashCache cache = DirectoryHashCache.getInstance(cacheDir.getAbsolutePath());
+
+			String hash = SDKUtil.generateDirectoryHash(null, dir.getAbsolutePath(), "seed", cache);
+			Assert.assertEquals(referenceDirectoryHash("seed", "package a", "package b"), hash);
+			Assert.assertEquals(hash, SDKUtil.generateDirectoryHash(null, dir.getAbsolutePath(), "seed", cache));
+			Assert.assertTrue(new File(cacheDir, "dirhash.properties").exists());
+
+			// A change in the first file changes the hash chained after it
+			Files.write(new File(dir, "src/a.go").toPath(), "package aa".getBytes());
+			Assert.assertEquals(referenceDirectoryHash("seed", "package aa", "package b"),
+					SDKUtil.generateDirectoryHash(null, dir.getAbsolutePath(), "seed", cache));
+		} finally {
+			SDKUtil.deleteFileOrDirectory(dir);
+			SDKUtil.deleteFileOrDirectory(cacheDir);
+		}
+	}
+
+	@Test
+	public void testDirectoryHashCacheRacyFile() throws IOException {
+		File dir = Files.createTempDirectory("chaincode").toFile();
+		try {
+			File file = new File(dir, "a.go");
+			Files.write(file.toPath(), "package a".getBytes());
+			long modified = file.lastModified();
+			DirectoryHashCache cache = DirectoryHashCache.getInstance(null);
+			Assert.assertEquals(referenceDirectoryHash("seed", "package a"),
+					SDKUtil.generateDirectoryHash(null, dir.getAbsolutePath(), "seed", cache));
+
+			// Modified again within the same time stamp, with the same size
+			Files.write(file.toPath(), "package b".getBytes());
+			file.setLastModified(modified);
+			Assert.assertEquals(referenceDirectoryHash("seed", "package b"),
+					SDKUtil.generateDirectoryHash(null, dir.getAbsolutePath(), "seed", cache));
+		} finally {
+			SDKUtil.deleteFileOrDirectory(dir);
+		}
+	}
+
+	// Each file is hashed with the hex hash of the previous files appended
+	private static String referenceDirectoryHash(String hash, String... contents) {
+		for (String content : contents) {
+			hash = Hex.toHexString(SDKUtil.hash(Arrays.concatenate(content.getBytes(), hash.getBytes()), new SHA3Digest()));
+		}
+		return hash;
+	}
+
+	@Test
+	public void testGenerateTarGzIsReproducible() throws IOException {
+		File dir = Files.createTempDirectory("chaincode").toFile();
+		try {
+			Files.write(new File(dir, "b.go").toPath(), "package b".getBytes());
+			Files.write(new File(dir, "a.go").toPath(), "package a".getBytes());
+			ByteArrayOutputStream first = new ByteArrayOutputStream();
+			SDKUtil.generateTarGz(dir, first, Collections.singletonMap("Dockerfile", "FROM base".getBytes()));
+
+			// Same contents, different modification time
+			new File(dir, "a.go").setLastModified(System.currentTimeMillis() - 3600000);
+			ByteArrayOutputStream second = new ByteArrayOutputStream();
+			SDKUtil.generateTarGz(dir, second, Collections.singletonMap("Dockerfile", "FROM base".getBytes()));
+			Assert.assertArrayEquals(first.toByteArray(), second.toByteArray());
+
+			List<String> names = new ArrayList<>();
+			try (TarArchiveInputStream in = new TarArchiveInputStream(new GzipCompressorInputStream(
+					new ByteArrayInputStream(first.toByteArray())))) {
+				TarArchiveEntry entry;
+				while ((entry = in.getNextTarEntry()) != null) {
+					names.add(entry.getName());
+					Assert.assertEquals(0, entry.getModTime().getTime());
+					Assert.assertEquals("", entry.getUserName());
+				}
+			}
+			Assert.assertEquals(java.util.Arrays.asList("Dockerfile", "a.go", "b.go"), names);
+		} finally {
+			SDKUtil.deleteFileOrDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testDeploymentPackageKey() throws IOException {
+		File dir = Files.createTempDirectory("chaincode").toFile();
+		try {
+			Files.write(new File(dir, "a.go").toPath(), "package a".getBytes());
+			Map<String, byte[]> dockerfile = Collections.singletonMap("Dockerfile", "FROM base".getBytes());
+			String key = DeploymentPackageCache.getKey("GO_LANG", "hash", dir, dockerfile);
+			Assert.assertEquals(key, DeploymentPackageCache.getKey("GO_LANG", "hash", dir, dockerfile));
+			Assert.assertNotEquals(key, DeploymentPackageCache.getKey("JAVA", "hash", dir, dockerfile));
+			Assert.assertNotEquals(key, DeploymentPackageCache.getKey("GO_LANG", "hash", dir,
+					Collections.singletonMap("Dockerfile", "FROM other".getBytes())));
+
+			// Renaming a file does not change the deployment hash, but changes the package
+			Files.move(new File(dir, "a.go").toPath(), new File(dir, "b.go").toPath());
+			String renamed = DeploymentPackageCache.getKey("GO_LANG", "hash", dir, dockerfile);
+			Assert.assertNotEquals(key, renamed);
+
+			// So does the executable bit
+			Assert.assertTrue(new File(dir, "b.go").setExecutable(!new File(dir, "b.go").canExecute()));
+			Assert.assertNotEquals(renamed, DeploymentPackageCache.getKey("GO_LANG", "hash", dir, dockerfile));
+		} finally {
+			SDKUtil.deleteFileOrDirectory(dir);
+		}
+	}
 }
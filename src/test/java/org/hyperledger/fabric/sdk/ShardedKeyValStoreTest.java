@@ -0,0 +1,104 @@
+package org.hyperledger.fabric.sdk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedKeyValStoreTest {
+
+	private File directory;
+
+	@Before
+	public void init() throws IOException {
+		directory = Files.createTempDirectory("keyvalstore").toFile();
+		directory.deleteOnExit();
+	}
+
+	@Test
+	public void testSetAndGetValue() {
+		ShardedKeyValStore store = new ShardedKeyValStore(directory.getAbsolutePath(), 4);
+		for (int i = 0; i < 100; i++) {
+			store.setValue("member.user" + i, "state" + i);
+		}
+		store.setValue("member.user0", null);
+
+		store = new ShardedKeyValStore(directory.getAbsolutePath(), 4);
+		Assert.assertNull(store.getValue("member.user0"));
+		for (int i = 1; i < 100; i++) {
+			Assert.assertEquals("state" + i, store.getValue("member.user" + i));
+		}
+		Assert.assertEquals(4, directory.list(
+				(dir, name) -> name.startsWith("shard-") && name.endsWith(".properties")).length);
+	}
+
+	@Test
+	public void testShardCountIsKept() {
+		ShardedKeyValStore store = new ShardedKeyValStore(directory.getAbsolutePath(), 8);
+		store.setValue("member.user1", "state1");
+
+		store = new ShardedKeyValStore(directory.getAbsolutePath(), 16);
+		Assert.assertEquals(8, store.getShardCount());
+		Assert.assertEquals("state1", store.getValue("member.user1"));
+	}
+
+	@Test
+	public void testConcurrentSetValue() throws Exception {
+		ShardedKeyValStore store = new ShardedKeyValStore(directory.getAbsolutePath(), 4);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			String name = "member.user" + i;
+			futures.add(executor.submit(() -> store.setValue(name, name)));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		ShardedKeyValStore reopened = new ShardedKeyValStore(directory.getAbsolutePath());
+		for (int i = 0; i < 200; i++) {
+			Assert.assertEquals("member.user" + i, reopened.getValue("member.user" + i));
+		}
+	}
+
+	@Test
+	public void testUnreadableShardNotOverwritten() throws Exception {
+		ShardedKeyValStore store = new ShardedKeyValStore(directory.getAbsolutePath(), 1);
+		store.setValue("member.user1", "state1");
+		store.setValue("member.user2", "state2");
+
+		// Make the shard unreadable with a link to itself, as a new process would find it
+		Path shard = directory.toPath().resolve("shard-0000.properties");
+		Path saved = directory.toPath().resolve("shard-0000.saved");
+		Files.move(shard, saved);
+		Files.createSymbolicLink(shard, shard.getFileName());
+
+		ShardedKeyValStore reopened = new ShardedKeyValStore(directory.getAbsolutePath());
+		try {
+			reopened.setValue("member.user3", "state3");
+			Assert.fail("The write of an unreadable shard succeeded");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		Assert.assertTrue(Files.isSymbolicLink(shard));
+
+		// Once the shard can be read again, the names it held are still there
+		Files.delete(shard);
+		Files.move(saved, shard);
+		reopened.setValue("member.user3", "state3");
+		reopened = new ShardedKeyValStore(directory.getAbsolutePath());
+		Assert.assertEquals("state1", reopened.getValue("member.user1"));
+		Assert.assertEquals("state2", reopened.getValue("member.user2"));
+		Assert.assertEquals("state3", reopened.getValue("member.user3"));
+	}
+}
@@ -0,0 +1,73 @@
+package org.hyperledger.fabric.sdk;
+
+import java.math.BigInteger;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.sdk.exception.CryptoException;
+import org.hyperledger.fabric.sdk.exception.EnrollmentException;
+import org.hyperledger.fabric.sdk.exception.GetTCertBatchException;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+
+/**
+ * Member services shared by the tests, which register and enroll any member and issue tcerts with
+ * private keys derived from the call number, and can be made to fail.
+ */
+class StubMemberServices implements MemberServices {
+	AtomicInteger calls = new AtomicInteger();
+	volatile boolean fail = false;
+	// Names of the members whose enrollment fails
+	final Set<String> failedEnrollments = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	CryptoPrimitives crypto;
+
+	public int getSecurityLevel() {
+		return 256;
+	}
+
+	public void setSecurityLevel(int securityLevel) {
+	}
+
+	public String getHashAlgorithm() {
+		return "SHA3";
+	}
+
+	public void setHashAlgorithm(String hashAlgorithm) {
+	}
+
+	public String register(RegistrationRequest req, Member registrar) {
+		return "secret-" + req.getEnrollmentID();
+	}
+
+	public Enrollment enroll(EnrollmentRequest req) throws EnrollmentException {
+		if (failedEnrollments.contains(req.getEnrollmentID())) {
+			throw new EnrollmentException("Enrollment refused", null);
+		}
+		Enrollment enrollment = new Enrollment();
+		enrollment.setKey("0a0b");
+		enrollment.setCert("0c0d");
+		enrollment.setChainKey("0e0f");
+		return enrollment;
+	}
+
+	public List<TCert> getTCertBatch(GetTCertBatchRequest req) throws GetTCertBatchException {
+		int call = calls.incrementAndGet();
+		if (fail) {
+			throw new GetTCertBatchException("TCA unavailable", null);
+		}
+		List<TCert> tcerts = new ArrayList<>();
+		try {
+			for (int i = 0; i < req.getNum(); i++) {
+				PrivateKey privateKey = crypto.ecdsaKeyFromBigInt(BigInteger.valueOf(call * 1000 + i));
+				tcerts.add(new TCert(new byte[] {(byte) call, (byte) i}, privateKey));
+			}
+		} catch (CryptoException e) {
+			throw new GetTCertBatchException("Could not create tcert", e);
+		}
+		return tcerts;
+	}
+}
@@ -0,0 +1,213 @@
+package org.hyperledger.fabric.sdk;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.interfaces.ECPrivateKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+import org.hyperledger.fabric.sdk.stats.Rate;
+import org.hyperledger.fabric.sdk.stats.ResponseTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TCertGetterTest {
+
+	private static final int BATCH_SIZE = 10;
+
+	private StubMemberServices memberServices;
+	private Member member;
+
+	@Before
+	public void init() {
+		memberServices = new StubMemberServices();
+		memberServices.crypto = new CryptoPrimitives("SHA3", 256);
+		Chain chain = new Chain("chain1");
+		chain.setMemberServices(memberServices);
+		chain.cryptoPrimitives = memberServices.crypto;
+		chain.setTCertBatchSize(BATCH_SIZE);
+		member = new Member("user1", chain);
+		member.setEnrollment(new Enrollment());
+	}
+
+	@Test
+	public void testGetNextTCert() {
+		TCertGetter getter = new TCertGetter(member, null, "");
+		Assert.assertNotNull(getter.getNextTCert());
+		Assert.assertEquals(1, memberServices.calls.get());
+	}
+
+	@Test
+	public void testFailedBatch() {
+		memberServices.fail = true;
+		TCertGetter getter = new TCertGetter(member, null, "");
+		Assert.assertNull(getter.getNextTCert());
+	}
+
+	@Test
+	public void testPrefetchFastArrivals() throws Exception {
+		member.getChain().setPreFetchMode(true);
+		// 100 tcerts per second with a 100 ms response time: the next batch is needed 110 tcerts ahead
+		TCertGetter getter = prefetchingGetter(0.1, 100);
+		getter.getNextTCert();
+		Assert.assertEquals(1, memberServices.calls.get());
+
+		// so it is requested while the pool still holds most of the batch
+		getter.getNextTCert();
+		for (int i = 0; i < 100 && getter.getTCertCount() < 2 * BATCH_SIZE - 2; i++) {
+			Thread.sleep(20);
+		}
+		Assert.assertEquals(2, memberServices.calls.get());
+		Assert.assertEquals(2 * BATCH_SIZE - 2, getter.getTCertCount());
+	}
+
+	@Test
+	public void testPrefetchSlowArrivals() throws Exception {
+		member.getChain().setPreFetchMode(true);
+		// 4.5 tcerts per second with a negligible response time: the next batch is needed 4.5 tcerts ahead
+		TCertGetter getter = prefetchingGetter(0.0045, 0);
+		for (int i = 0; i < BATCH_SIZE - 5; i++) {
+			getter.getNextTCert();
+		}
+		Assert.assertEquals(1, memberServices.calls.get());
+		Assert.assertEquals(5, getter.getTCertCount());
+
+		getter.getNextTCert();
+		for (int i = 0; i < 100 && memberServices.calls.get() < 2; i++) {
+			Thread.sleep(20);
+		}
+		Assert.assertEquals(2, memberServices.calls.get());
+	}
+
+	// A getter seeing a fixed arrival rate (in tcerts per ms) and TCA response time (in ms)
+	private TCertGetter prefetchingGetter(double rate, double responseTime) {
+		TCertGetter getter = new TCertGetter(member, null, "");
+		getter.arrivalRate = new Rate() {
+			@Override
+			public double getValue() {
+				return rate;
+			}
+		};
+		getter.getTCertResponseTime = new ResponseTime() {
+			@Override
+			public double getValue() {
+				return responseTime;
+			}
+		};
+		return getter;
+	}
+
+	@Test
+	public void testConcurrentGetNextTCert() throws Exception {
+		member.getChain().setPreFetchMode(false);
+		TCertGetter getter = new TCertGetter(member, null, "");
+		int count = BATCH_SIZE * 5;
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<TCert>> futures = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			futures.add(executor.submit(getter::getNextTCert));
+		}
+		Set<TCert> tcerts = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Future<TCert> future : futures) {
+			TCert tcert = future.get();
+			Assert.assertNotNull(tcert);
+			tcerts.add(tcert);
+		}
+		executor.shutdown();
+
+		// Every tcert is handed out once and none is lost
+		Assert.assertEquals(count, tcerts.size());
+		Assert.assertEquals(memberServices.calls.get() * BATCH_SIZE, count + getter.getTCertCount());
+	}
+
+	@Test
+	public void testSaveAndRestoreTCerts() throws Exception {
+		File file = File.createTempFile("tcerts", ".properties");
+		file.deleteOnExit();
+		CryptoPrimitives crypto = memberServices.crypto;
+		Enrollment enrollment = new Enrollment();
+		enrollment.setKey(Hex.toHexString(crypto.ecdsaKeyGen().getPrivate().getEncoded()));
+
+		Chain chain = new Chain("chain1");
+		chain.setMemberServices(memberServices);
+		chain.setKeyValStore(new FileKeyValStore(file.getAbsolutePath()));
+		chain.cryptoPrimitives = crypto;
+		chain.setPreFetchMode(false);
+		chain.setTCertBatchSize(BATCH_SIZE);
+		Member member = new Member("user1", chain);
+		member.setEnrollment(enrollment);
+
+		TCert used = member.getNextTCert(null);
+		member.saveTCerts();
+		Assert.assertEquals(1, memberServices.calls.get());
+
+		// A new member object, as after a restart, uses the saved tcerts
+		Member restarted = new Member("user1", chain);
+		restarted.setEnrollment(enrollment);
+		Set<BigInteger> keys = new HashSet<>();
+		for (int i = 0; i < BATCH_SIZE - 1; i++) {
+			TCert tcert = restarted.getNextTCert(null);
+			Assert.assertFalse(java.util.Arrays.equals(used.getCert(), tcert.getCert()));
+			keys.add(((ECPrivateKey) tcert.getPrivateKey()).getS());
+		}
+		Assert.assertEquals(BATCH_SIZE - 1, keys.size());
+		Assert.assertEquals(1, memberServices.calls.get());
+
+		// The saved tcerts can only be restored once
+		Member again = new Member("user1", chain);
+		again.setEnrollment(enrollment);
+		again.getNextTCert(null);
+		Assert.assertEquals(2, memberServices.calls.get());
+	}
+
+	@Test
+	public void testRestoreFailureKeepsSavedTCerts() throws Exception {
+		CryptoPrimitives crypto = memberServices.crypto;
+		Enrollment enrollment = new Enrollment();
+		enrollment.setKey(Hex.toHexString(crypto.ecdsaKeyGen().getPrivate().getEncoded()));
+		Enrollment otherEnrollment = new Enrollment();
+		otherEnrollment.setKey(Hex.toHexString(crypto.ecdsaKeyGen().getPrivate().getEncoded()));
+
+		Chain chain = new Chain("chain1");
+		chain.setMemberServices(memberServices);
+		MemoryKeyValStore store = new MemoryKeyValStore();
+		chain.setKeyValStore(store);
+		chain.cryptoPrimitives = crypto;
+		chain.setPreFetchMode(false);
+		chain.setTCertBatchSize(BATCH_SIZE);
+		Member member = new Member("user1", chain);
+		member.setEnrollment(enrollment);
+		member.getNextTCert(null);
+		member.saveTCerts();
+		String saved = store.values.get("tcerts.user1.");
+		Assert.assertNotNull(saved);
+
+		// Tcerts that can't be decrypted with the enrollment key stay in the store
+		Member otherKey = new Member("user1", chain);
+		otherKey.setEnrollment(otherEnrollment);
+		Assert.assertNotNull(otherKey.getNextTCert(null));
+		Assert.assertEquals(2, memberServices.calls.get());
+		Assert.assertEquals(saved, store.values.get("tcerts.user1."));
+
+		// and are restored by a member enrolled with the key that saved them
+		Member restarted = new Member("user1", chain);
+		restarted.setEnrollment(enrollment);
+		for (int i = 0; i < BATCH_SIZE - 1; i++) {
+			Assert.assertNotNull(restarted.getNextTCert(null));
+		}
+		Assert.assertEquals(2, memberServices.calls.get());
+		Assert.assertEquals("", store.values.get("tcerts.user1."));
+	}
+}
@@ -0,0 +1,42 @@
+package org.hyperledger.fabric.sdk;
+
+import java.math.BigInteger;
+import java.security.interfaces.ECPrivateKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hyperledger.fabric.sdk.helper.DirectBufferPool;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TCertPoolTest {
+
+	@Test
+	public void testAddAndPoll() throws Exception {
+		CryptoPrimitives crypto = new CryptoPrimitives("SHA3", 256);
+		DirectBufferPool buffers = new DirectBufferPool();
+		TCertPool pool = new TCertPool(crypto, buffers);
+		List<TCert> tcerts = new ArrayList<>();
+		for (int i = 1; i <= 3; i++) {
+			tcerts.add(new TCert(new byte[] {(byte) i, 0x30}, crypto.ecdsaKeyFromBigInt(BigInteger.valueOf(i))));
+		}
+		pool.addAll(tcerts);
+		Assert.assertEquals(3, pool.size());
+		int free = buffers.getFreeCount(64);
+
+		// Tcerts come back in order with their certificate and private key
+		TCert first = pool.poll();
+		Assert.assertArrayEquals(tcerts.get(0).getCert(), first.getCert());
+		Assert.assertEquals(BigInteger.ONE, ((ECPrivateKey) first.getPrivateKey()).getS());
+		Assert.assertEquals(free + 1, buffers.getFreeCount(64));
+
+		List<TCert> rest = new ArrayList<>();
+		pool.drainTo(rest);
+		Assert.assertEquals(2, rest.size());
+		Assert.assertTrue(Arrays.equals(tcerts.get(2).getCert(), rest.get(1).getCert()));
+		Assert.assertNull(pool.poll());
+		Assert.assertEquals(free + 3, buffers.getFreeCount(64));
+	}
+}